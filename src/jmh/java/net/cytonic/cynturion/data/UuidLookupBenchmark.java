@@ -0,0 +1,104 @@
+package net.cytonic.cynturion.data;
+
+import net.cytonic.cynturion.CynturionSettings;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.*;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point lookups of a player row by each uuid layout, against the MySQL server configured by the usual
+ * {@code DATABASE_*} settings:
+ * <ul>
+ *     <li>{@code stringKey}: the original layout, keyed by the 36 character {@code uuid}</li>
+ *     <li>{@code binaryKey}: the layout {@link UuidMigration} produces, keyed by a stored {@code uuid_bin}</li>
+ * </ul>
+ * Run with {@code ./gradlew jmh}. The scratch tables are dropped again afterwards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UuidLookupBenchmark {
+
+    @Param({"100000"})
+    private int rows;
+
+    private Connection connection;
+    private PreparedStatement stringKey;
+    private PreparedStatement binaryKey;
+    private UUID[] uuids;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        CynturionSettings.importFromProperties();
+        CynturionSettings.importFromEnv();
+        connection = DriverManager.getConnection("jdbc:mysql://" + CynturionSettings.DATABASE_HOST + ":" + CynturionSettings.DATABASE_PORT + "/"
+                        + CynturionSettings.DATABASE_NAME + "?useSSL=" + CynturionSettings.DATABASE_USE_SSL
+                        + "&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true&useServerPrepStmts=true",
+                CynturionSettings.DATABASE_USER, CynturionSettings.DATABASE_PASSWORD);
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DROP TABLE IF EXISTS bench_uuid_string, bench_uuid_binary");
+            statement.executeUpdate("CREATE TABLE bench_uuid_string (uuid VARCHAR(36) PRIMARY KEY, rank_id VARCHAR(32))");
+            statement.executeUpdate("CREATE TABLE bench_uuid_binary (uuid_bin BINARY(16) PRIMARY KEY, uuid VARCHAR(36) UNIQUE, rank_id VARCHAR(32))");
+        }
+        uuids = new UUID[rows];
+        connection.setAutoCommit(false);
+        try (PreparedStatement string = connection.prepareStatement("INSERT INTO bench_uuid_string (uuid, rank_id) VALUES (?, 'DEFAULT')");
+             PreparedStatement binary = connection.prepareStatement("INSERT INTO bench_uuid_binary (uuid_bin, uuid, rank_id) VALUES (?, ?, 'DEFAULT')")) {
+            for (int i = 0; i < rows; i++) {
+                uuids[i] = UUID.randomUUID();
+                string.setString(1, uuids[i].toString());
+                string.addBatch();
+                binary.setBytes(1, UuidMigration.toBytes(uuids[i]));
+                binary.setString(2, uuids[i].toString());
+                binary.addBatch();
+                if (i % 1000 == 999 || i == rows - 1) {
+                    string.executeBatch();
+                    binary.executeBatch();
+                    connection.commit();
+                }
+            }
+        }
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE TABLE bench_uuid_string, bench_uuid_binary");
+        }
+        stringKey = connection.prepareStatement("SELECT rank_id FROM bench_uuid_string WHERE uuid = ?");
+        binaryKey = connection.prepareStatement("SELECT rank_id FROM bench_uuid_binary WHERE uuid_bin = ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DROP TABLE IF EXISTS bench_uuid_string, bench_uuid_binary");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public String stringKey() throws SQLException {
+        stringKey.setString(1, randomUuid().toString());
+        return lookup(stringKey);
+    }
+
+    @Benchmark
+    public String binaryKey() throws SQLException {
+        binaryKey.setBytes(1, UuidMigration.toBytes(randomUuid()));
+        return lookup(binaryKey);
+    }
+
+    private UUID randomUuid() {
+        return uuids[ThreadLocalRandom.current().nextInt(uuids.length)];
+    }
+
+    private static String lookup(PreparedStatement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery()) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package net.cytonic.cynturion.messaging;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rank change messages in the text format, {@code <uuid>|:|<rank>} as UTF-8, against the {@link BinaryCodec} format,
+ * both as the bytes that go over the wire. A text message is 39 bytes plus the rank name and a binary one 21, and
+ * the difference in allocations shows up with {@code -prof gc}.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryCodecBenchmark {
+
+    private static final String RANK = "MODERATOR";
+
+    private UUID uuid;
+    private byte[] text;
+    private byte[] binary;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        uuid = UUID.randomUUID();
+        text = encodeText();
+        binary = encodeBinary();
+    }
+
+    @Benchmark
+    public byte[] encodeText() {
+        return (uuid + "|:|" + RANK).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return BinaryCodec.encodeRankChange(uuid, RANK);
+    }
+
+    @Benchmark
+    public UUID decodeText() {
+        String[] parts = new String(text, StandardCharsets.UTF_8).split("\\|:\\|");
+        UUID decoded = UUID.fromString(parts[0]);
+        return parts[1].equals(RANK) ? decoded : null;
+    }
+
+    @Benchmark
+    public UUID decodeBinary() {
+        BinaryCodec.Reader reader = BinaryCodec.read(binary, BinaryCodec.RANK_CHANGE);
+        UUID decoded = reader.uuid();
+        return reader.string().equals(RANK) ? decoded : null;
+    }
+}
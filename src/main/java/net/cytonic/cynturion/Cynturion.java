@@ -2,10 +2,12 @@ package net.cytonic.cynturion;
 
 import com.google.inject.Inject;
 import com.velocitypowered.api.command.CommandManager;
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.ResultedEvent;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.connection.LoginEvent;
+import com.velocitypowered.api.event.connection.PreLoginEvent;
 import com.velocitypowered.api.event.player.KickedFromServerEvent;
 import com.velocitypowered.api.event.player.PlayerChooseInitialServerEvent;
 import com.velocitypowered.api.event.player.ServerConnectedEvent;
@@ -16,12 +18,18 @@ import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
-import com.velocitypowered.api.proxy.server.PingOptions;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
 import lombok.Getter;
+import net.cytonic.containers.PlayerChangeServerContainer;
+import net.cytonic.containers.PlayerLoginLogoutContainer;
+import net.cytonic.cynturion.balancing.BalancingStrategy;
+import net.cytonic.cynturion.balancing.ServerLoads;
 import net.cytonic.cynturion.commands.PoddetailsCommand;
 import net.cytonic.cynturion.commands.ProcessPurchase;
 import net.cytonic.cynturion.data.CytonicDatabase;
+import net.cytonic.cynturion.data.LoginProfile;
+import net.cytonic.cynturion.health.HealthMonitor;
+import net.cytonic.cynturion.metrics.HandlerMetrics;
 import net.cytonic.cynturion.permissions.PermissionManager;
 import net.cytonic.utils.MessageUtils;
 import net.kyori.adventure.text.Component;
@@ -29,6 +37,9 @@ import net.kyori.adventure.text.format.NamedTextColor;
 import org.slf4j.Logger;
 
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static net.cytonic.utils.MiniMessageTemplate.MM;
 
@@ -53,6 +64,9 @@ public class Cynturion {
     private RankManager rankManager;
     private PermissionManager permissionManager;
     private ServerGroupingManager serverGroupingManager;
+    private HealthMonitor healthMonitor;
+    private final ServerLoads serverLoads = new ServerLoads();
+    private final HandlerMetrics handlerMetrics = new HandlerMetrics();
 
     @Inject
     public Cynturion(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
@@ -81,7 +95,12 @@ public class Cynturion {
         database.connect();
         rankManager = new RankManager(this);
         permissionManager = new PermissionManager(this);
-        serverGroupingManager = new ServerGroupingManager();
+        serverGroupingManager = new ServerGroupingManager(serverLoads, BalancingStrategy.valueOf(CynturionSettings.FALLBACK_BALANCING.toUpperCase()));
+        proxyServer.getScheduler().buildTask(this, () -> serverLoads.refresh(proxyServer.getAllServers()))
+                .repeat(CynturionSettings.FALLBACK_LOAD_REFRESH, TimeUnit.MILLISECONDS).schedule();
+        healthMonitor = new HealthMonitor(this);
+        healthMonitor.start();
+        rabbitmq.startConsumers();
     }
 
     /**
@@ -90,9 +109,17 @@ public class Cynturion {
      * @param event the LoginEvent triggered when a player joins the server
      */
     @Subscribe
-    public void onPlayerJoin(LoginEvent event) {
-        redis.sendLoginMessage(event.getPlayer());
-        proxyServer.getCommandManager().unregister("server");
+    public EventTask onPlayerJoin(LoginEvent event) {
+        long start = System.nanoTime();
+        return EventTask.async(() -> {
+            try {
+                redis.sendLoginMessage(event.getPlayer());
+                rabbitmq.publishEvent("player.join", new PlayerLoginLogoutContainer(event.getPlayer().getUsername(), event.getPlayer().getUniqueId(), PlayerLoginLogoutContainer.Type.LOGIN).toString());
+                proxyServer.getCommandManager().unregister("server");
+            } finally {
+                handlerMetrics.record("onPlayerJoin", start);
+            }
+        });
     }
 
     /**
@@ -101,8 +128,17 @@ public class Cynturion {
      * @param event the DisconnectEvent triggered when a player leaves the server
      */
     @Subscribe
-    public void onPlayerLeave(DisconnectEvent event) {
-        redis.sendLogoutMessage(event.getPlayer());
+    public EventTask onPlayerLeave(DisconnectEvent event) {
+        long start = System.nanoTime();
+        rankManager.unloadRank(event.getPlayer().getUniqueId());
+        return EventTask.async(() -> {
+            try {
+                redis.sendLogoutMessage(event.getPlayer());
+                rabbitmq.publishEvent("player.leave", new PlayerLoginLogoutContainer(event.getPlayer().getUsername(), event.getPlayer().getUniqueId(), PlayerLoginLogoutContainer.Type.LOGOUT).toString());
+            } finally {
+                handlerMetrics.record("onPlayerLeave", start);
+            }
+        });
     }
 
     /**
@@ -110,15 +146,16 @@ public class Cynturion {
      *
      * @param event the KickedFromServerEvent triggered when a player is kicked from the server
      */
-    //todo: Make a dedicated list of fallbacks
     @Subscribe
     public void onKick(KickedFromServerEvent event) {
-        RegisteredServer fallback = serverGroupingManager.chooseFallback().orElse(null);
+        long start = System.nanoTime();
+        RegisteredServer fallback = serverGroupingManager.chooseFallback(server -> !server.equals(event.getServer())).orElse(null);
         if (fallback == null) {
             event.setResult(KickedFromServerEvent.DisconnectPlayer.create(MM."<red>Failed to rescue: ".append(event.getServerKickReason().orElse(MM."<dark_gray><No reason provided>"))));
-            return;
+        } else {
+            event.setResult(KickedFromServerEvent.RedirectPlayer.create(fallback, Component.text("Whoops! You were kicked from the server, but I rescued you! :)", NamedTextColor.RED)));
         }
-        event.setResult(KickedFromServerEvent.RedirectPlayer.create(fallback, Component.text("Whoops! You were kicked from the server, but I rescued you! :)", NamedTextColor.RED)));
+        handlerMetrics.record("onKick", start);
     }
 
     /**
@@ -127,12 +164,19 @@ public class Cynturion {
      * @param event the ServerConnectedEvent triggered when a player changes servers
      */
     @Subscribe
-    public void onServerChange(ServerConnectedEvent event) {
-        String oldServerName = "none";
-        if (event.getPreviousServer().isPresent())
-            oldServerName = event.getPreviousServer().get().getServerInfo().getName();
-        redis.sendPlayerChangeServerMessage(event.getPlayer(), oldServerName, event.getServer().getServerInfo().getName());
-        logger.info("{} changed servers from {} to {}", event.getPlayer().getUsername(), oldServerName, event.getServer().getServerInfo().getName());
+    public EventTask onServerChange(ServerConnectedEvent event) {
+        long start = System.nanoTime();
+        String oldServerName = event.getPreviousServer().map(server -> server.getServerInfo().getName()).orElse("none");
+        String newServerName = event.getServer().getServerInfo().getName();
+        return EventTask.async(() -> {
+            try {
+                redis.sendPlayerChangeServerMessage(event.getPlayer(), oldServerName, newServerName);
+                rabbitmq.publishEvent("player.switch", new PlayerChangeServerContainer(event.getPlayer().getUniqueId(), newServerName).toString());
+                logger.info("{} changed servers from {} to {}", event.getPlayer().getUsername(), oldServerName, newServerName);
+            } finally {
+                handlerMetrics.record("onServerChange", start);
+            }
+        });
     }
 
     /**
@@ -142,58 +186,97 @@ public class Cynturion {
      */
     @Subscribe
     public void onPlayerChooseServer(PlayerChooseInitialServerEvent event) {
+        long start = System.nanoTime();
         RegisteredServer server = serverGroupingManager.chooseFallback().orElse(null);
         if (server == null) {
             logger.warn("No fallback server!");
         }
         event.setInitialServer(server);
+        handlerMetrics.record("onPlayerChooseServer", start);
     }
 
+    /**
+     * Subscribes to the ServerPreConnectEvent and redirects the player to a fallback if the target failed its last
+     * health checks. Only reads the {@link HealthMonitor}'s cache, so connecting never waits on a ping.
+     *
+     * @param event the ServerPreConnectEvent triggered before a player connects to a server
+     */
     @Subscribe
     public void onServerConnect(ServerPreConnectEvent event) {
-        event.getOriginalServer().ping(PingOptions.DEFAULT).whenComplete((serverPing, throwable) -> {
-            if (throwable != null) {
-                logger.error("Failed to ping server {}", event.getOriginalServer().getServerInfo().getName());
-                logger.warn("Unregistering server {}", event.getOriginalServer().getServerInfo().getName());
-                serverGroupingManager.removeServer(event.getOriginalServer().getServerInfo().getName(), null);
-                getProxy().unregisterServer(event.getOriginalServer().getServerInfo());
-                getRedis().removeServer(event.getOriginalServer().getServerInfo());
-                getRedis().sendUnregisterServerMessage(event.getOriginalServer().getServerInfo());
-                return;
-            }
+        long start = System.nanoTime();
+        RegisteredServer target = event.getOriginalServer();
+        if (!healthMonitor.isAvailable(target.getServerInfo().getName())) {
+            // servers that are down are already left out of the fallback tiers, so a rejected pick is never counted
+            RegisteredServer fallback = serverGroupingManager.chooseFallback(server -> !server.equals(target)).orElse(null);
+            logger.info("Server {} is down, sending {} to {}", target.getServerInfo().getName(), event.getPlayer().getUsername(),
+                    fallback == null ? "nowhere" : fallback.getServerInfo().getName());
+            event.setResult(fallback == null ? ServerPreConnectEvent.ServerResult.denied() : ServerPreConnectEvent.ServerResult.allowed(fallback));
+        }
+        handlerMetrics.record("onServerConnect", start);
+    }
 
-            if (serverPing == null) {
-                logger.info("Server {} is not online, unregistering", event.getOriginalServer().getServerInfo().getName());
-                proxyServer.unregisterServer(event.getOriginalServer().getServerInfo());
-                redis.sendServerTimeoutMessage(event.getOriginalServer().getServerInfo());
-                redis.removeServer(event.getOriginalServer().getServerInfo());
+    @Subscribe
+    public void onProxyShutdown(ProxyShutdownEvent event) {
+        // each step runs even if an earlier one fails, so the final auditlog flush always happens
+        try {
+            redis.shutdown();
+        } finally {
+            try {
+                rabbitmq.shutdown();
+            } finally {
+                database.disconnect();
             }
-        });
+        }
     }
 
+    /**
+     * Starts fetching the player's ban status and rank before authentication finishes, so the
+     * result is usually ready by the time {@link LoginEvent} fires.
+     *
+     * @param event the PreLoginEvent triggered when a player starts connecting
+     */
     @Subscribe
-    public void onProxyShutdown(ProxyShutdownEvent event) {
-        redis.shutdown();
-        rabbitmq.shutdown();
-        database.disconnect();
+    public void onPreLogin(PreLoginEvent event) {
+        long start = System.nanoTime();
+        if (event.getUniqueId() != null && event.getResult().isAllowed()) {
+            database.prefetchLoginProfile(event.getUniqueId());
+        }
+        handlerMetrics.record("onPreLogin", start);
     }
 
+    /**
+     * Decides whether the player may join. Velocity holds the login until the returned task completes, and the
+     * result is always set before it does, so the decision can't arrive after the login has gone through.
+     *
+     * @param event the LoginEvent triggered when a player joins the server
+     * @return a task that completes once the player's ban status and rank are known
+     */
     @Subscribe
-    public void preConnect(LoginEvent event) {
+    public EventTask preConnect(LoginEvent event) {
+        long start = System.nanoTime();
         Player player = event.getPlayer();
-        database.isBanned(player.getUniqueId()).whenComplete((data, throwable) -> {
+        CompletableFuture<LoginProfile> profile;
+        try {
+            profile = database.takeLoginProfile(player.getUniqueId());
+        } catch (IllegalStateException e) {
+            profile = CompletableFuture.failedFuture(e);
+        }
+        return EventTask.resumeWhenComplete(profile.orTimeout(CynturionSettings.LOGIN_CHECK_TIMEOUT, TimeUnit.MILLISECONDS).handle((data, throwable) -> {
             if (throwable != null) {
-                logger.error("Failed to check if player {} is banned", player.getUniqueId());
+                if (throwable instanceof TimeoutException) {
+                    logger.error("Timed out checking if player {} is banned", player.getUniqueId());
+                } else {
+                    logger.error("Failed to check if player {} is banned", player.getUniqueId(), throwable);
+                }
                 event.setResult(ResultedEvent.ComponentResult.denied(MM."<red>Unable to check if you are banned!"));
-                return;
-            }
-            if (data.isBanned()) {
-                event.setResult(ResultedEvent.ComponentResult.denied(MessageUtils.formatBanMessage(data)));
-                return;
+            } else if (data.banData().isBanned()) {
+                event.setResult(ResultedEvent.ComponentResult.denied(MessageUtils.formatBanMessage(data.banData())));
+            } else {
+                rankManager.setRank(player.getUniqueId(), data.rank());
             }
-            // load the player's rank as soon as possible
-            rankManager.loadRank(event.getPlayer().getUniqueId());
-        });
+            handlerMetrics.record("preConnect", start);
+            return null;
+        }));
     }
 
     /**
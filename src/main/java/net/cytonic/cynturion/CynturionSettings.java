@@ -38,6 +38,241 @@ public class CynturionSettings {
      * Use SSL?
      */
     public static boolean DATABASE_USE_SSL = false;
+    /**
+     * Maximum number of pooled database connections, also the number of database worker threads
+     */
+    public static int DATABASE_POOL_SIZE = 10;
+    /**
+     * Milliseconds a caller may wait to borrow a pooled connection
+     */
+    public static long DATABASE_CONNECTION_TIMEOUT = 5000;
+    /**
+     * Milliseconds a connection may be borrowed before it is reported as a leak, 0 to disable
+     */
+    public static long DATABASE_LEAK_DETECTION_THRESHOLD = 10000;
+    /**
+     * Seconds a single query may run before the driver cancels it
+     */
+    public static int DATABASE_QUERY_TIMEOUT = 5;
+    /**
+     * Maximum number of auditlog entries written in one batch
+     */
+    public static int AUDIT_LOG_BATCH_SIZE = 100;
+    /**
+     * Milliseconds the auditlog writer waits for a batch to fill before writing it anyway
+     */
+    public static long AUDIT_LOG_LINGER = 200;
+    /**
+     * Maximum number of auditlog entries waiting to be written
+     */
+    public static int AUDIT_LOG_QUEUE_CAPACITY = 10000;
+    /**
+     * Milliseconds a caller waits for room in a full auditlog queue before the entry is rejected
+     */
+    public static long AUDIT_LOG_OFFER_TIMEOUT = 1000;
+    /**
+     * Maximum number of players whose ban status is cached
+     */
+    public static int BAN_CACHE_SIZE = 10000;
+    /**
+     * Seconds a cached ban status is trusted before it is fetched again
+     */
+    public static long BAN_CACHE_TTL = 300;
+    /**
+     * Maximum number of player ranks kept in memory
+     */
+    public static int RANK_CACHE_SIZE = 10000;
+    /**
+     * Minutes a cached rank may go unused before it is evicted
+     */
+    public static long RANK_CACHE_IDLE = 30;
+    /**
+     * Seconds between passes of the expired ban sweeper
+     */
+    public static long BAN_SWEEP_INTERVAL = 60;
+    /**
+     * Maximum number of expired bans removed per statement
+     */
+    public static int BAN_SWEEP_CHUNK = 500;
+    /**
+     * Key the player tables by a BINARY(16) copy of the uuid and look players up by it instead of the 36 character string
+     */
+    public static boolean DATABASE_BINARY_UUIDS = false;
+    /**
+     * How many rows are backfilled per transaction when migrating to binary uuids
+     */
+    public static int DATABASE_UUID_BACKFILL_CHUNK = 1000;
+
+    // Events
+    /**
+     * Milliseconds a login may wait on the ban and rank lookup before it is denied
+     */
+    public static long LOGIN_CHECK_TIMEOUT = 5000;
+
+    // Redis
+    /**
+     * Milliseconds to wait for further server switches by the same player before publishing one merged update, 0 to publish every switch
+     */
+    public static long REDIS_SERVER_CHANGE_COALESCE = 0;
+    /**
+     * The delay before the first attempt to resubscribe after losing the Redis subscription, in milliseconds
+     */
+    public static long REDIS_RECONNECT_INITIAL_BACKOFF = 500;
+    /**
+     * The longest delay between attempts to resubscribe to Redis, in milliseconds
+     */
+    public static long REDIS_RECONNECT_MAX_BACKOFF = 30000;
+    /**
+     * Whether server status, player send and player kick messages are consumed from Redis Streams instead of pub/sub
+     */
+    public static boolean REDIS_STREAMS = false;
+    /**
+     * The approximate number of entries each stream is capped at
+     */
+    public static long REDIS_STREAM_MAX_LENGTH = 10000;
+    /**
+     * The most stream entries read in one XREADGROUP call
+     */
+    public static int REDIS_STREAM_BATCH = 100;
+    /**
+     * While streams are on, also take server status, player send and player kick messages from pub/sub, for publishers
+     * that don't write to the streams yet. Turn this off once every publisher has moved to streams.
+     */
+    public static boolean REDIS_STREAMS_PUBSUB_FALLBACK = true;
+    /**
+     * Seconds a stream consumer group may go unread before it is assumed to belong to a proxy that is gone and destroyed
+     */
+    public static long REDIS_STREAM_GROUP_IDLE = 3600;
+
+    // Proxy
+    /**
+     * The unique id of this proxy, used for its presence hash and its stream consumer group. Defaults to HOSTNAME, which
+     * survives restarts of a StatefulSet pod; set it explicitly where the hostname changes on every restart.
+     */
+    public static String PROXY_ID = System.getenv("HOSTNAME");
+    /**
+     * Seconds a proxy's player presence survives without a heartbeat, so the players of a crashed proxy stop showing as online
+     */
+    public static int REDIS_PRESENCE_TTL = 30;
+    /**
+     * Seconds between passes that remove stale presence and server entries from Redis
+     */
+    public static int REDIS_RECONCILE_INTERVAL = 300;
+    /**
+     * Seconds a player may stay online without any proxy claiming them before they are treated as stale. Proxies of older
+     * builds don't claim their players, so this has to outlast a rolling deploy.
+     */
+    public static long REDIS_UNCLAIMED_GRACE = 3600;
+    /**
+     * How many members each SSCAN/HSCAN call asks Redis for
+     */
+    public static int REDIS_SCAN_COUNT = 500;
+    /**
+     * Comma separated broadcast channels, ban_invalidation and player_rank_change, to publish in the binary format. Their messages then go to the channel's ":binary" twin, which only proxies that read the format subscribe to, so list a channel once no older proxy needs its messages.
+     */
+    public static String REDIS_BINARY_CHANNELS = "";
+    /**
+     * Whether the server registry is served from a local cache that Redis keeps up to date over RESP3 tracking. Player presence changes on every login and switch, so it is always read from Redis, and ranks are read from MySQL through the rank cache.
+     */
+    public static boolean REDIS_CLIENT_CACHE = false;
+    /**
+     * The most keys held in the local Redis cache
+     */
+    public static int REDIS_CLIENT_CACHE_SIZE = 10000;
+    /**
+     * How many threads run player command handlers, commands for the same player always run on the same thread
+     */
+    public static int REDIS_HANDLER_THREADS = 4;
+    /**
+     * How many player commands each handler thread can have waiting
+     */
+    public static int REDIS_HANDLER_QUEUE_CAPACITY = 1000;
+    /**
+     * What happens to a pub/sub player command when its handler queue is full: DROP drops it right away, BLOCK holds up the subscriber for up to REDIS_HANDLER_OFFER_TIMEOUT milliseconds before dropping it. Stream entries are never dropped, the stream reader waits for room instead.
+     */
+    public static String REDIS_HANDLER_OVERFLOW = "DROP";
+    /**
+     * Milliseconds the subscriber waits for room in a full handler queue under the BLOCK policy
+     */
+    public static long REDIS_HANDLER_OFFER_TIMEOUT = 1000;
+
+    // RabbitMQ
+    /**
+     * How many channels the RabbitMQ publisher spreads messages over, each with its own thread
+     */
+    public static int RABBITMQ_PUBLISH_CHANNELS = 4;
+    /**
+     * The most messages a publisher channel sends before waiting for more
+     */
+    public static int RABBITMQ_PUBLISH_BATCH = 100;
+    /**
+     * Milliseconds a publisher channel waits to fill a batch
+     */
+    public static long RABBITMQ_PUBLISH_LINGER = 5;
+    /**
+     * How many messages each publisher channel can have waiting before new ones are rejected
+     */
+    public static int RABBITMQ_PUBLISH_QUEUE_CAPACITY = 10000;
+    /**
+     * How many channels consume player commands, each handling up to RABBITMQ_PREFETCH commands at a time
+     */
+    public static int RABBITMQ_CONSUMERS = 2;
+    /**
+     * How many unacknowledged player commands the broker hands each consumer channel
+     */
+    public static int RABBITMQ_PREFETCH = 20;
+    /**
+     * Milliseconds a proxy's command queue survives unused before the broker deletes it
+     */
+    public static int RABBITMQ_PROXY_QUEUE_EXPIRY = 300000;
+
+    // Balancing
+    /**
+     * How players are spread over the servers of a fallback group: RANDOM, LEAST_CONNECTIONS, POWER_OF_TWO or WEIGHTED
+     */
+    public static String FALLBACK_BALANCING = "POWER_OF_TWO";
+    /**
+     * Milliseconds between refreshes of the cached player counts used for balancing
+     */
+    public static long FALLBACK_LOAD_REFRESH = 1000;
+    /**
+     * The capacity assumed for a server until it reports its own
+     */
+    public static int FALLBACK_DEFAULT_CAPACITY = 100;
+    /**
+     * Comma separated ids of the groups players fall back to, tried in order. Empty means every group that can be fallen back to, in the order the groups were loaded.
+     */
+    public static String FALLBACK_TIERS = "";
+    /**
+     * How full a fallback server may get, as a fraction of its capacity, before the other servers of its tier are preferred
+     */
+    public static double FALLBACK_SOFT_CAP = 0.8;
+    /**
+     * How full a fallback server may get, as a fraction of its capacity, before no more players are sent to it
+     */
+    public static double FALLBACK_HARD_CAP = 1.0;
+    /**
+     * Comma separated caps overriding FALLBACK_SOFT_CAP and FALLBACK_HARD_CAP for a group or a single server, as <group or server id>=<soft>:<hard>. A server's own override wins over its group's.
+     */
+    public static String FALLBACK_CAPS = "";
+
+    // Health checks
+    /**
+     * Milliseconds between health checks of every registered server
+     */
+    public static long HEALTH_CHECK_INTERVAL = 5000;
+    /**
+     * Milliseconds a health check ping may take before it counts as failed
+     */
+    public static long HEALTH_CHECK_TIMEOUT = 2000;
+    /**
+     * How many servers are pinged at once
+     */
+    public static int HEALTH_CHECK_CONCURRENCY = 8;
+    /**
+     * How many health checks in a row a server must fail before it is unregistered
+     */
+    public static int HEALTH_CHECK_FAILURES = 3;
 
 
     public static void importFromProperties() {
@@ -58,6 +293,116 @@ public class CynturionSettings {
         if (System.getProperty("DATABASE_NAME") != null) DATABASE_NAME = System.getProperty("DATABASE_NAME");
         if (System.getProperty("DATABASE_USE_SSL") != null)
             DATABASE_USE_SSL = Boolean.parseBoolean(System.getProperty("DATABASE_USE_SSL"));
+        if (System.getProperty("DATABASE_POOL_SIZE") != null)
+            DATABASE_POOL_SIZE = Integer.parseInt(System.getProperty("DATABASE_POOL_SIZE"));
+        if (System.getProperty("DATABASE_CONNECTION_TIMEOUT") != null)
+            DATABASE_CONNECTION_TIMEOUT = Long.parseLong(System.getProperty("DATABASE_CONNECTION_TIMEOUT"));
+        if (System.getProperty("DATABASE_LEAK_DETECTION_THRESHOLD") != null)
+            DATABASE_LEAK_DETECTION_THRESHOLD = Long.parseLong(System.getProperty("DATABASE_LEAK_DETECTION_THRESHOLD"));
+        if (System.getProperty("DATABASE_QUERY_TIMEOUT") != null)
+            DATABASE_QUERY_TIMEOUT = Integer.parseInt(System.getProperty("DATABASE_QUERY_TIMEOUT"));
+        if (System.getProperty("AUDIT_LOG_BATCH_SIZE") != null)
+            AUDIT_LOG_BATCH_SIZE = Integer.parseInt(System.getProperty("AUDIT_LOG_BATCH_SIZE"));
+        if (System.getProperty("AUDIT_LOG_LINGER") != null)
+            AUDIT_LOG_LINGER = Long.parseLong(System.getProperty("AUDIT_LOG_LINGER"));
+        if (System.getProperty("AUDIT_LOG_QUEUE_CAPACITY") != null)
+            AUDIT_LOG_QUEUE_CAPACITY = Integer.parseInt(System.getProperty("AUDIT_LOG_QUEUE_CAPACITY"));
+        if (System.getProperty("AUDIT_LOG_OFFER_TIMEOUT") != null)
+            AUDIT_LOG_OFFER_TIMEOUT = Long.parseLong(System.getProperty("AUDIT_LOG_OFFER_TIMEOUT"));
+        if (System.getProperty("BAN_CACHE_SIZE") != null)
+            BAN_CACHE_SIZE = Integer.parseInt(System.getProperty("BAN_CACHE_SIZE"));
+        if (System.getProperty("BAN_CACHE_TTL") != null)
+            BAN_CACHE_TTL = Long.parseLong(System.getProperty("BAN_CACHE_TTL"));
+        if (System.getProperty("RANK_CACHE_SIZE") != null)
+            RANK_CACHE_SIZE = Integer.parseInt(System.getProperty("RANK_CACHE_SIZE"));
+        if (System.getProperty("RANK_CACHE_IDLE") != null)
+            RANK_CACHE_IDLE = Long.parseLong(System.getProperty("RANK_CACHE_IDLE"));
+        if (System.getProperty("BAN_SWEEP_INTERVAL") != null)
+            BAN_SWEEP_INTERVAL = Long.parseLong(System.getProperty("BAN_SWEEP_INTERVAL"));
+        if (System.getProperty("BAN_SWEEP_CHUNK") != null)
+            BAN_SWEEP_CHUNK = Integer.parseInt(System.getProperty("BAN_SWEEP_CHUNK"));
+        if (System.getProperty("DATABASE_BINARY_UUIDS") != null)
+            DATABASE_BINARY_UUIDS = Boolean.parseBoolean(System.getProperty("DATABASE_BINARY_UUIDS"));
+        if (System.getProperty("DATABASE_UUID_BACKFILL_CHUNK") != null)
+            DATABASE_UUID_BACKFILL_CHUNK = Integer.parseInt(System.getProperty("DATABASE_UUID_BACKFILL_CHUNK"));
+        if (System.getProperty("LOGIN_CHECK_TIMEOUT") != null)
+            LOGIN_CHECK_TIMEOUT = Long.parseLong(System.getProperty("LOGIN_CHECK_TIMEOUT"));
+        if (System.getProperty("REDIS_SERVER_CHANGE_COALESCE") != null)
+            REDIS_SERVER_CHANGE_COALESCE = Long.parseLong(System.getProperty("REDIS_SERVER_CHANGE_COALESCE"));
+        if (System.getProperty("REDIS_RECONNECT_INITIAL_BACKOFF") != null)
+            REDIS_RECONNECT_INITIAL_BACKOFF = Long.parseLong(System.getProperty("REDIS_RECONNECT_INITIAL_BACKOFF"));
+        if (System.getProperty("REDIS_RECONNECT_MAX_BACKOFF") != null)
+            REDIS_RECONNECT_MAX_BACKOFF = Long.parseLong(System.getProperty("REDIS_RECONNECT_MAX_BACKOFF"));
+        if (System.getProperty("REDIS_STREAMS") != null)
+            REDIS_STREAMS = Boolean.parseBoolean(System.getProperty("REDIS_STREAMS"));
+        if (System.getProperty("REDIS_STREAM_MAX_LENGTH") != null)
+            REDIS_STREAM_MAX_LENGTH = Long.parseLong(System.getProperty("REDIS_STREAM_MAX_LENGTH"));
+        if (System.getProperty("REDIS_STREAM_BATCH") != null)
+            REDIS_STREAM_BATCH = Integer.parseInt(System.getProperty("REDIS_STREAM_BATCH"));
+        if (System.getProperty("REDIS_STREAMS_PUBSUB_FALLBACK") != null)
+            REDIS_STREAMS_PUBSUB_FALLBACK = Boolean.parseBoolean(System.getProperty("REDIS_STREAMS_PUBSUB_FALLBACK"));
+        if (System.getProperty("REDIS_STREAM_GROUP_IDLE") != null)
+            REDIS_STREAM_GROUP_IDLE = Long.parseLong(System.getProperty("REDIS_STREAM_GROUP_IDLE"));
+        if (System.getProperty("PROXY_ID") != null)
+            PROXY_ID = System.getProperty("PROXY_ID");
+        if (System.getProperty("REDIS_PRESENCE_TTL") != null)
+            REDIS_PRESENCE_TTL = Integer.parseInt(System.getProperty("REDIS_PRESENCE_TTL"));
+        if (System.getProperty("REDIS_RECONCILE_INTERVAL") != null)
+            REDIS_RECONCILE_INTERVAL = Integer.parseInt(System.getProperty("REDIS_RECONCILE_INTERVAL"));
+        if (System.getProperty("REDIS_UNCLAIMED_GRACE") != null)
+            REDIS_UNCLAIMED_GRACE = Long.parseLong(System.getProperty("REDIS_UNCLAIMED_GRACE"));
+        if (System.getProperty("REDIS_SCAN_COUNT") != null)
+            REDIS_SCAN_COUNT = Integer.parseInt(System.getProperty("REDIS_SCAN_COUNT"));
+        if (System.getProperty("REDIS_BINARY_CHANNELS") != null)
+            REDIS_BINARY_CHANNELS = System.getProperty("REDIS_BINARY_CHANNELS");
+        if (System.getProperty("REDIS_CLIENT_CACHE") != null)
+            REDIS_CLIENT_CACHE = Boolean.parseBoolean(System.getProperty("REDIS_CLIENT_CACHE"));
+        if (System.getProperty("REDIS_CLIENT_CACHE_SIZE") != null)
+            REDIS_CLIENT_CACHE_SIZE = Integer.parseInt(System.getProperty("REDIS_CLIENT_CACHE_SIZE"));
+        if (System.getProperty("REDIS_HANDLER_THREADS") != null)
+            REDIS_HANDLER_THREADS = Integer.parseInt(System.getProperty("REDIS_HANDLER_THREADS"));
+        if (System.getProperty("REDIS_HANDLER_QUEUE_CAPACITY") != null)
+            REDIS_HANDLER_QUEUE_CAPACITY = Integer.parseInt(System.getProperty("REDIS_HANDLER_QUEUE_CAPACITY"));
+        if (System.getProperty("REDIS_HANDLER_OVERFLOW") != null)
+            REDIS_HANDLER_OVERFLOW = System.getProperty("REDIS_HANDLER_OVERFLOW");
+        if (System.getProperty("REDIS_HANDLER_OFFER_TIMEOUT") != null)
+            REDIS_HANDLER_OFFER_TIMEOUT = Long.parseLong(System.getProperty("REDIS_HANDLER_OFFER_TIMEOUT"));
+        if (System.getProperty("RABBITMQ_PUBLISH_CHANNELS") != null)
+            RABBITMQ_PUBLISH_CHANNELS = Integer.parseInt(System.getProperty("RABBITMQ_PUBLISH_CHANNELS"));
+        if (System.getProperty("RABBITMQ_PUBLISH_BATCH") != null)
+            RABBITMQ_PUBLISH_BATCH = Integer.parseInt(System.getProperty("RABBITMQ_PUBLISH_BATCH"));
+        if (System.getProperty("RABBITMQ_PUBLISH_LINGER") != null)
+            RABBITMQ_PUBLISH_LINGER = Long.parseLong(System.getProperty("RABBITMQ_PUBLISH_LINGER"));
+        if (System.getProperty("RABBITMQ_PUBLISH_QUEUE_CAPACITY") != null)
+            RABBITMQ_PUBLISH_QUEUE_CAPACITY = Integer.parseInt(System.getProperty("RABBITMQ_PUBLISH_QUEUE_CAPACITY"));
+        if (System.getProperty("RABBITMQ_CONSUMERS") != null)
+            RABBITMQ_CONSUMERS = Integer.parseInt(System.getProperty("RABBITMQ_CONSUMERS"));
+        if (System.getProperty("RABBITMQ_PREFETCH") != null)
+            RABBITMQ_PREFETCH = Integer.parseInt(System.getProperty("RABBITMQ_PREFETCH"));
+        if (System.getProperty("RABBITMQ_PROXY_QUEUE_EXPIRY") != null)
+            RABBITMQ_PROXY_QUEUE_EXPIRY = Integer.parseInt(System.getProperty("RABBITMQ_PROXY_QUEUE_EXPIRY"));
+        if (System.getProperty("FALLBACK_BALANCING") != null)
+            FALLBACK_BALANCING = System.getProperty("FALLBACK_BALANCING");
+        if (System.getProperty("FALLBACK_LOAD_REFRESH") != null)
+            FALLBACK_LOAD_REFRESH = Long.parseLong(System.getProperty("FALLBACK_LOAD_REFRESH"));
+        if (System.getProperty("FALLBACK_DEFAULT_CAPACITY") != null)
+            FALLBACK_DEFAULT_CAPACITY = Integer.parseInt(System.getProperty("FALLBACK_DEFAULT_CAPACITY"));
+        if (System.getProperty("HEALTH_CHECK_INTERVAL") != null)
+            HEALTH_CHECK_INTERVAL = Long.parseLong(System.getProperty("HEALTH_CHECK_INTERVAL"));
+        if (System.getProperty("HEALTH_CHECK_TIMEOUT") != null)
+            HEALTH_CHECK_TIMEOUT = Long.parseLong(System.getProperty("HEALTH_CHECK_TIMEOUT"));
+        if (System.getProperty("HEALTH_CHECK_CONCURRENCY") != null)
+            HEALTH_CHECK_CONCURRENCY = Integer.parseInt(System.getProperty("HEALTH_CHECK_CONCURRENCY"));
+        if (System.getProperty("HEALTH_CHECK_FAILURES") != null)
+            HEALTH_CHECK_FAILURES = Integer.parseInt(System.getProperty("HEALTH_CHECK_FAILURES"));
+        if (System.getProperty("FALLBACK_TIERS") != null)
+            FALLBACK_TIERS = System.getProperty("FALLBACK_TIERS");
+        if (System.getProperty("FALLBACK_SOFT_CAP") != null)
+            FALLBACK_SOFT_CAP = Double.parseDouble(System.getProperty("FALLBACK_SOFT_CAP"));
+        if (System.getProperty("FALLBACK_HARD_CAP") != null)
+            FALLBACK_HARD_CAP = Double.parseDouble(System.getProperty("FALLBACK_HARD_CAP"));
+        if (System.getProperty("FALLBACK_CAPS") != null)
+            FALLBACK_CAPS = System.getProperty("FALLBACK_CAPS");
     }
 
     public static void importFromEnv() {
@@ -78,6 +423,116 @@ public class CynturionSettings {
         if (System.getenv("DATABASE_NAME") != null) DATABASE_NAME = System.getenv("DATABASE_NAME");
         if (System.getenv("DATABASE_USE_SSL") != null)
             DATABASE_USE_SSL = Boolean.parseBoolean(System.getenv("DATABASE_USE_SSL"));
+        if (System.getenv("DATABASE_POOL_SIZE") != null)
+            DATABASE_POOL_SIZE = Integer.parseInt(System.getenv("DATABASE_POOL_SIZE"));
+        if (System.getenv("DATABASE_CONNECTION_TIMEOUT") != null)
+            DATABASE_CONNECTION_TIMEOUT = Long.parseLong(System.getenv("DATABASE_CONNECTION_TIMEOUT"));
+        if (System.getenv("DATABASE_LEAK_DETECTION_THRESHOLD") != null)
+            DATABASE_LEAK_DETECTION_THRESHOLD = Long.parseLong(System.getenv("DATABASE_LEAK_DETECTION_THRESHOLD"));
+        if (System.getenv("DATABASE_QUERY_TIMEOUT") != null)
+            DATABASE_QUERY_TIMEOUT = Integer.parseInt(System.getenv("DATABASE_QUERY_TIMEOUT"));
+        if (System.getenv("AUDIT_LOG_BATCH_SIZE") != null)
+            AUDIT_LOG_BATCH_SIZE = Integer.parseInt(System.getenv("AUDIT_LOG_BATCH_SIZE"));
+        if (System.getenv("AUDIT_LOG_LINGER") != null)
+            AUDIT_LOG_LINGER = Long.parseLong(System.getenv("AUDIT_LOG_LINGER"));
+        if (System.getenv("AUDIT_LOG_QUEUE_CAPACITY") != null)
+            AUDIT_LOG_QUEUE_CAPACITY = Integer.parseInt(System.getenv("AUDIT_LOG_QUEUE_CAPACITY"));
+        if (System.getenv("AUDIT_LOG_OFFER_TIMEOUT") != null)
+            AUDIT_LOG_OFFER_TIMEOUT = Long.parseLong(System.getenv("AUDIT_LOG_OFFER_TIMEOUT"));
+        if (System.getenv("BAN_CACHE_SIZE") != null)
+            BAN_CACHE_SIZE = Integer.parseInt(System.getenv("BAN_CACHE_SIZE"));
+        if (System.getenv("BAN_CACHE_TTL") != null)
+            BAN_CACHE_TTL = Long.parseLong(System.getenv("BAN_CACHE_TTL"));
+        if (System.getenv("RANK_CACHE_SIZE") != null)
+            RANK_CACHE_SIZE = Integer.parseInt(System.getenv("RANK_CACHE_SIZE"));
+        if (System.getenv("RANK_CACHE_IDLE") != null)
+            RANK_CACHE_IDLE = Long.parseLong(System.getenv("RANK_CACHE_IDLE"));
+        if (System.getenv("BAN_SWEEP_INTERVAL") != null)
+            BAN_SWEEP_INTERVAL = Long.parseLong(System.getenv("BAN_SWEEP_INTERVAL"));
+        if (System.getenv("BAN_SWEEP_CHUNK") != null)
+            BAN_SWEEP_CHUNK = Integer.parseInt(System.getenv("BAN_SWEEP_CHUNK"));
+        if (System.getenv("DATABASE_BINARY_UUIDS") != null)
+            DATABASE_BINARY_UUIDS = Boolean.parseBoolean(System.getenv("DATABASE_BINARY_UUIDS"));
+        if (System.getenv("DATABASE_UUID_BACKFILL_CHUNK") != null)
+            DATABASE_UUID_BACKFILL_CHUNK = Integer.parseInt(System.getenv("DATABASE_UUID_BACKFILL_CHUNK"));
+        if (System.getenv("LOGIN_CHECK_TIMEOUT") != null)
+            LOGIN_CHECK_TIMEOUT = Long.parseLong(System.getenv("LOGIN_CHECK_TIMEOUT"));
+        if (System.getenv("REDIS_SERVER_CHANGE_COALESCE") != null)
+            REDIS_SERVER_CHANGE_COALESCE = Long.parseLong(System.getenv("REDIS_SERVER_CHANGE_COALESCE"));
+        if (System.getenv("REDIS_RECONNECT_INITIAL_BACKOFF") != null)
+            REDIS_RECONNECT_INITIAL_BACKOFF = Long.parseLong(System.getenv("REDIS_RECONNECT_INITIAL_BACKOFF"));
+        if (System.getenv("REDIS_RECONNECT_MAX_BACKOFF") != null)
+            REDIS_RECONNECT_MAX_BACKOFF = Long.parseLong(System.getenv("REDIS_RECONNECT_MAX_BACKOFF"));
+        if (System.getenv("REDIS_STREAMS") != null)
+            REDIS_STREAMS = Boolean.parseBoolean(System.getenv("REDIS_STREAMS"));
+        if (System.getenv("REDIS_STREAM_MAX_LENGTH") != null)
+            REDIS_STREAM_MAX_LENGTH = Long.parseLong(System.getenv("REDIS_STREAM_MAX_LENGTH"));
+        if (System.getenv("REDIS_STREAM_BATCH") != null)
+            REDIS_STREAM_BATCH = Integer.parseInt(System.getenv("REDIS_STREAM_BATCH"));
+        if (System.getenv("REDIS_STREAMS_PUBSUB_FALLBACK") != null)
+            REDIS_STREAMS_PUBSUB_FALLBACK = Boolean.parseBoolean(System.getenv("REDIS_STREAMS_PUBSUB_FALLBACK"));
+        if (System.getenv("REDIS_STREAM_GROUP_IDLE") != null)
+            REDIS_STREAM_GROUP_IDLE = Long.parseLong(System.getenv("REDIS_STREAM_GROUP_IDLE"));
+        if (System.getenv("PROXY_ID") != null)
+            PROXY_ID = System.getenv("PROXY_ID");
+        if (System.getenv("REDIS_PRESENCE_TTL") != null)
+            REDIS_PRESENCE_TTL = Integer.parseInt(System.getenv("REDIS_PRESENCE_TTL"));
+        if (System.getenv("REDIS_RECONCILE_INTERVAL") != null)
+            REDIS_RECONCILE_INTERVAL = Integer.parseInt(System.getenv("REDIS_RECONCILE_INTERVAL"));
+        if (System.getenv("REDIS_UNCLAIMED_GRACE") != null)
+            REDIS_UNCLAIMED_GRACE = Long.parseLong(System.getenv("REDIS_UNCLAIMED_GRACE"));
+        if (System.getenv("REDIS_SCAN_COUNT") != null)
+            REDIS_SCAN_COUNT = Integer.parseInt(System.getenv("REDIS_SCAN_COUNT"));
+        if (System.getenv("REDIS_BINARY_CHANNELS") != null)
+            REDIS_BINARY_CHANNELS = System.getenv("REDIS_BINARY_CHANNELS");
+        if (System.getenv("REDIS_CLIENT_CACHE") != null)
+            REDIS_CLIENT_CACHE = Boolean.parseBoolean(System.getenv("REDIS_CLIENT_CACHE"));
+        if (System.getenv("REDIS_CLIENT_CACHE_SIZE") != null)
+            REDIS_CLIENT_CACHE_SIZE = Integer.parseInt(System.getenv("REDIS_CLIENT_CACHE_SIZE"));
+        if (System.getenv("REDIS_HANDLER_THREADS") != null)
+            REDIS_HANDLER_THREADS = Integer.parseInt(System.getenv("REDIS_HANDLER_THREADS"));
+        if (System.getenv("REDIS_HANDLER_QUEUE_CAPACITY") != null)
+            REDIS_HANDLER_QUEUE_CAPACITY = Integer.parseInt(System.getenv("REDIS_HANDLER_QUEUE_CAPACITY"));
+        if (System.getenv("REDIS_HANDLER_OVERFLOW") != null)
+            REDIS_HANDLER_OVERFLOW = System.getenv("REDIS_HANDLER_OVERFLOW");
+        if (System.getenv("REDIS_HANDLER_OFFER_TIMEOUT") != null)
+            REDIS_HANDLER_OFFER_TIMEOUT = Long.parseLong(System.getenv("REDIS_HANDLER_OFFER_TIMEOUT"));
+        if (System.getenv("RABBITMQ_PUBLISH_CHANNELS") != null)
+            RABBITMQ_PUBLISH_CHANNELS = Integer.parseInt(System.getenv("RABBITMQ_PUBLISH_CHANNELS"));
+        if (System.getenv("RABBITMQ_PUBLISH_BATCH") != null)
+            RABBITMQ_PUBLISH_BATCH = Integer.parseInt(System.getenv("RABBITMQ_PUBLISH_BATCH"));
+        if (System.getenv("RABBITMQ_PUBLISH_LINGER") != null)
+            RABBITMQ_PUBLISH_LINGER = Long.parseLong(System.getenv("RABBITMQ_PUBLISH_LINGER"));
+        if (System.getenv("RABBITMQ_PUBLISH_QUEUE_CAPACITY") != null)
+            RABBITMQ_PUBLISH_QUEUE_CAPACITY = Integer.parseInt(System.getenv("RABBITMQ_PUBLISH_QUEUE_CAPACITY"));
+        if (System.getenv("RABBITMQ_CONSUMERS") != null)
+            RABBITMQ_CONSUMERS = Integer.parseInt(System.getenv("RABBITMQ_CONSUMERS"));
+        if (System.getenv("RABBITMQ_PREFETCH") != null)
+            RABBITMQ_PREFETCH = Integer.parseInt(System.getenv("RABBITMQ_PREFETCH"));
+        if (System.getenv("RABBITMQ_PROXY_QUEUE_EXPIRY") != null)
+            RABBITMQ_PROXY_QUEUE_EXPIRY = Integer.parseInt(System.getenv("RABBITMQ_PROXY_QUEUE_EXPIRY"));
+        if (System.getenv("FALLBACK_BALANCING") != null)
+            FALLBACK_BALANCING = System.getenv("FALLBACK_BALANCING");
+        if (System.getenv("FALLBACK_LOAD_REFRESH") != null)
+            FALLBACK_LOAD_REFRESH = Long.parseLong(System.getenv("FALLBACK_LOAD_REFRESH"));
+        if (System.getenv("FALLBACK_DEFAULT_CAPACITY") != null)
+            FALLBACK_DEFAULT_CAPACITY = Integer.parseInt(System.getenv("FALLBACK_DEFAULT_CAPACITY"));
+        if (System.getenv("HEALTH_CHECK_INTERVAL") != null)
+            HEALTH_CHECK_INTERVAL = Long.parseLong(System.getenv("HEALTH_CHECK_INTERVAL"));
+        if (System.getenv("HEALTH_CHECK_TIMEOUT") != null)
+            HEALTH_CHECK_TIMEOUT = Long.parseLong(System.getenv("HEALTH_CHECK_TIMEOUT"));
+        if (System.getenv("HEALTH_CHECK_CONCURRENCY") != null)
+            HEALTH_CHECK_CONCURRENCY = Integer.parseInt(System.getenv("HEALTH_CHECK_CONCURRENCY"));
+        if (System.getenv("HEALTH_CHECK_FAILURES") != null)
+            HEALTH_CHECK_FAILURES = Integer.parseInt(System.getenv("HEALTH_CHECK_FAILURES"));
+        if (System.getenv("FALLBACK_TIERS") != null)
+            FALLBACK_TIERS = System.getenv("FALLBACK_TIERS");
+        if (System.getenv("FALLBACK_SOFT_CAP") != null)
+            FALLBACK_SOFT_CAP = Double.parseDouble(System.getenv("FALLBACK_SOFT_CAP"));
+        if (System.getenv("FALLBACK_HARD_CAP") != null)
+            FALLBACK_HARD_CAP = Double.parseDouble(System.getenv("FALLBACK_HARD_CAP"));
+        if (System.getenv("FALLBACK_CAPS") != null)
+            FALLBACK_CAPS = System.getenv("FALLBACK_CAPS");
     }
 
 }
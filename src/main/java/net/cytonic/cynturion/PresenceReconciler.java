@@ -0,0 +1,177 @@
+package net.cytonic.cynturion;
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import net.cytonic.containers.PlayerChangeServerContainer;
+import net.cytonic.objects.CytonicServer;
+import org.slf4j.Logger;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Removes presence and server entries left behind in Redis, for example by a previous run of this proxy that never
+ * logged its players out. The sets are walked in chunks of {@link CynturionSettings#REDIS_SCAN_COUNT} and every
+ * chunk is checked and cleaned with one pipeline each, so a pass over tens of thousands of members stays at a few
+ * round trips per chunk.
+ * <p>
+ * A player entry is stale when the claiming proxy has stopped heartbeating, or when this proxy claims the player but
+ * doesn't have them. Proxies of older builds never claim their players, so an unclaimed player is only stale once it
+ * has stayed unclaimed for {@link CynturionSettings#REDIS_UNCLAIMED_GRACE} seconds, longer than any rolling deploy.
+ * Every pass also writes this proxy's own players back, in case their entries were lost.
+ * <p>
+ * A server entry is stale when its server is registered here under a different address, which happens when a server
+ * comes back on a new address without its stop being seen.
+ */
+class PresenceReconciler {
+
+    private static final Pattern UUID_PATTERN = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    private final Cynturion plugin;
+    private final RedisDatabase redis;
+    private final JedisPooled jedis;
+    private final Logger logger;
+    // unclaimed player -> when a pass first saw them unclaimed
+    private final Map<String, Long> unclaimedSince = new HashMap<>();
+
+    PresenceReconciler(Cynturion plugin, RedisDatabase redis, JedisPooled jedis) {
+        this.plugin = plugin;
+        this.redis = redis;
+        this.jedis = jedis;
+        this.logger = plugin.getLogger();
+    }
+
+    /**
+     * Runs one pass over the presence and server keys
+     */
+    void reconcile() {
+        try {
+            Map<String, String> local = redis.localPresence();
+            redis.restorePresence(local);
+            int players = reconcilePlayers(local);
+            int presence = reconcileOwnPresence(local);
+            int servers = reconcileServers();
+            if (players + presence + servers > 0) {
+                logger.info("Removed {} stale players, {} stale presence entries and {} stale servers from redis", players, presence, servers);
+            }
+        } catch (Exception e) {
+            logger.error("An error occurred whilst reconciling redis presence!", e);
+        }
+    }
+
+    private int reconcilePlayers(Map<String, String> local) {
+        Set<String> stale = new HashSet<>();
+        Set<String> unclaimed = new HashSet<>();
+        long now = System.currentTimeMillis();
+        long grace = TimeUnit.SECONDS.toMillis(CynturionSettings.REDIS_UNCLAIMED_GRACE);
+        Map<String, Boolean> proxyAlive = new HashMap<>();
+        redis.scan(RedisDatabase.ONLINE_PLAYER_UUID_KEY, chunk -> {
+            List<String> candidates = chunk.stream().filter(uuid -> !local.containsKey(uuid)).toList();
+            if (candidates.isEmpty()) return;
+            List<Response<String>> owners = new ArrayList<>(candidates.size());
+            try (Pipeline pipeline = jedis.pipelined()) {
+                candidates.forEach(uuid -> owners.add(pipeline.hget(RedisDatabase.PLAYER_PROXY_KEY, uuid)));
+                pipeline.sync();
+            }
+            // check each owning proxy once per pass
+            Map<String, Response<Boolean>> alive = new HashMap<>();
+            try (Pipeline pipeline = jedis.pipelined()) {
+                for (Response<String> owner : owners) {
+                    String proxy = owner.get();
+                    if (proxy == null || proxy.equals(redis.getProxyId()) || proxyAlive.containsKey(proxy)) continue;
+                    alive.computeIfAbsent(proxy, p -> pipeline.exists(RedisDatabase.PROXY_PRESENCE_PREFIX + p));
+                }
+                pipeline.sync();
+            }
+            alive.forEach((proxy, exists) -> proxyAlive.put(proxy, exists.get()));
+            List<String> remove = new ArrayList<>();
+            for (int i = 0; i < candidates.size(); i++) {
+                String proxy = owners.get(i).get();
+                if (proxy == null) {
+                    String uuid = candidates.get(i);
+                    unclaimed.add(uuid);
+                    if (now - unclaimedSince.computeIfAbsent(uuid, u -> now) >= grace) remove.add(uuid);
+                } else if (!proxyAlive.getOrDefault(proxy, true)) {
+                    remove.add(candidates.get(i));
+                } else if (proxy.equals(redis.getProxyId()) && plugin.getProxy().getPlayer(UUID.fromString(candidates.get(i))).isEmpty()) {
+                    // checked again in case they logged in after the snapshot was taken
+                    remove.add(candidates.get(i));
+                }
+            }
+            if (remove.isEmpty()) return;
+            try (Pipeline pipeline = jedis.pipelined()) {
+                pipeline.srem(RedisDatabase.ONLINE_PLAYER_UUID_KEY, remove.toArray(String[]::new));
+                pipeline.hdel(RedisDatabase.PLAYER_PROXY_KEY, remove.toArray(String[]::new));
+                pipeline.sync();
+            }
+            stale.addAll(remove);
+        });
+        // forget players that were claimed, removed or left since
+        unclaimedSince.keySet().retainAll(unclaimed);
+        stale.forEach(unclaimedSince::remove);
+        // server entries of stale players, and of local players that point at a server they already left
+        Set<String> expected = new HashSet<>();
+        local.forEach((uuid, server) -> {
+            if (!server.equals("none")) expected.add(new PlayerChangeServerContainer(UUID.fromString(uuid), server).toString());
+        });
+        redis.scan(RedisDatabase.ONLINE_PLAYER_SERVER_KEY, chunk -> {
+            List<String> remove = chunk.stream().filter(entry -> !expected.contains(entry) && references(entry, stale, local.keySet())).toList();
+            if (!remove.isEmpty()) jedis.srem(RedisDatabase.ONLINE_PLAYER_SERVER_KEY, remove.toArray(String[]::new));
+        });
+        return stale.size();
+    }
+
+    // entries hold the player's uuid, so they can be attributed without knowing the container's format
+    private static boolean references(String entry, Set<String> stale, Set<String> local) {
+        Matcher matcher = UUID_PATTERN.matcher(entry);
+        if (!matcher.find()) return false;
+        String uuid = matcher.group();
+        return stale.contains(uuid) || local.contains(uuid);
+    }
+
+    private int reconcileOwnPresence(Map<String, String> local) {
+        String key = RedisDatabase.PROXY_PRESENCE_PREFIX + redis.getProxyId();
+        int[] removed = {0};
+        redis.hscan(key, chunk -> {
+            String[] remove = chunk.stream().filter(uuid -> !local.containsKey(uuid)
+                    && plugin.getProxy().getPlayer(UUID.fromString(uuid)).isEmpty()).toArray(String[]::new);
+            if (remove.length == 0) return;
+            try (Pipeline pipeline = jedis.pipelined()) {
+                pipeline.hdel(key, remove);
+                pipeline.sync();
+            }
+            removed[0] += remove.length;
+        });
+        return removed[0];
+    }
+
+    private int reconcileServers() {
+        Map<String, InetSocketAddress> registered = new HashMap<>();
+        for (RegisteredServer server : plugin.getProxy().getAllServers()) {
+            registered.put(server.getServerInfo().getName(), server.getServerInfo().getAddress());
+        }
+        int[] removed = {0};
+        redis.scanServers(chunk -> {
+            List<String> remove = new ArrayList<>();
+            for (String entry : chunk) {
+                CytonicServer server = CytonicServer.deserialize(entry);
+                InetSocketAddress address = registered.get(server.id());
+                if (address == null) continue;
+                boolean sameHost = address.getHostString().equals(server.ip())
+                        || (address.getAddress() != null && address.getAddress().getHostAddress().equals(server.ip()));
+                if (!sameHost || address.getPort() != server.port()) {
+                    remove.add(entry);
+                }
+            }
+            if (remove.isEmpty()) return;
+            jedis.srem(RedisDatabase.ONLINE_SERVER_KEY, remove.toArray(String[]::new));
+            removed[0] += remove.size();
+        });
+        return removed[0];
+    }
+}
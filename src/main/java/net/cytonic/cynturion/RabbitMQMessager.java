@@ -1,17 +1,31 @@
 package net.cytonic.cynturion;
 
+import com.rabbitmq.client.BuiltinExchangeType;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
+import lombok.Getter;
+import net.cytonic.cynturion.messaging.RabbitCommandQueue;
+import net.cytonic.cynturion.messaging.RabbitPublisher;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
 
 public class RabbitMQMessager {
 
+    /**
+     * Topic exchange the proxy publishes player events to, routed by event type, e.g. {@code player.join}
+     */
+    public static final String PROXY_EVENTS_EXCHANGE = "cytonic.proxy.events";
+
     private final Cynturion plugin;
     private Connection connection;
     private Channel channel;
+    @Getter
+    private RabbitPublisher publisher;
+    @Getter
+    private RabbitCommandQueue commandQueue;
 
     public RabbitMQMessager(Cynturion plugin) {
         this.plugin = plugin;
@@ -46,6 +60,7 @@ public class RabbitMQMessager {
         } catch (IOException | TimeoutException e) {
             throw new RuntimeException(e);
         }
+        publisher = new RabbitPublisher(connection, plugin.getLogger());
     }
 
     /**
@@ -57,6 +72,42 @@ public class RabbitMQMessager {
      * @throws RuntimeException if there is an error declaring either queue
      */
     public void initializeQueues() {
+        try {
+            channel.exchangeDeclare(PROXY_EVENTS_EXCHANGE, BuiltinExchangeType.TOPIC, true);
+            commandQueue = new RabbitCommandQueue(plugin, connection, publisher, plugin.getRedis().getProxyId());
+            commandQueue.declare(channel);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Starts consuming player commands. Called once the rest of the proxy is initialized, since the handlers use it.
+     *
+     * @throws RuntimeException if a consumer couldn't be started
+     */
+    public void startConsumers() {
+        try {
+            commandQueue.start();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Publishes a player event to {@link #PROXY_EVENTS_EXCHANGE} without blocking. Failures are logged.
+     *
+     * @param type    the event type, used as the routing key
+     * @param message the event
+     * @return a future that completes once the broker confirmed the event
+     */
+    public CompletableFuture<Void> publishEvent(String type, String message) {
+        CompletableFuture<Void> future = publisher.publish(PROXY_EVENTS_EXCHANGE, type, message);
+        future.exceptionally(throwable -> {
+            plugin.getLogger().warn("Failed to publish the {} event: {}", type, throwable.getMessage());
+            return null;
+        });
+        return future;
     }
 
     /**
@@ -65,6 +116,8 @@ public class RabbitMQMessager {
      * @throws RuntimeException if an IOException occurs while closing the connection
      */
     public void shutdown() {
+        if (commandQueue != null) commandQueue.stop();
+        if (publisher != null) publisher.close(5_000);
         try {
             connection.close();
         } catch (IOException e) {
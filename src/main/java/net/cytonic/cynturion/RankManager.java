@@ -1,20 +1,33 @@
 package net.cytonic.cynturion;
 
-import com.google.inject.Inject;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import net.cytonic.enums.PlayerRank;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class RankManager {
-    @Inject
-    private Logger logger;
+    private final Logger logger;
     private final Cynturion plugin;
-    private ConcurrentHashMap<UUID, PlayerRank> ranks = new ConcurrentHashMap<>();
+    private final AsyncLoadingCache<UUID, PlayerRank> ranks;
 
     public RankManager(Cynturion plugin) {
         this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.ranks = Caffeine.newBuilder()
+                .maximumSize(CynturionSettings.RANK_CACHE_SIZE)
+                .expireAfterAccess(CynturionSettings.RANK_CACHE_IDLE, TimeUnit.MINUTES)
+                .buildAsync((uuid, executor) -> {
+                    try {
+                        return plugin.getDatabase().getPlayerRank(uuid);
+                    } catch (IllegalStateException e) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                });
     }
 
     /**
@@ -23,28 +36,77 @@ public class RankManager {
      * @param rank the new rank
      */
     public void setRank(UUID uuid, PlayerRank rank) {
-        ranks.put(uuid, rank);
+        ranks.put(uuid, CompletableFuture.completedFuture(rank));
     }
 
     /**
-     * todo: Listen on redis for rank changes
+     * Gets the rank of the player without blocking. If the rank isn't loaded yet, it starts loading and
+     * {@link PlayerRank#DEFAULT} is returned in the meantime.
+     *
      * @param uuid the uuid of the player
      * @return the rank of the player
      */
     public PlayerRank getRank(UUID uuid) {
-        return ranks.get(uuid);
+        CompletableFuture<PlayerRank> rank = ranks.get(uuid);
+        if (rank.isDone() && !rank.isCompletedExceptionally()) {
+            return rank.join();
+        }
+        return PlayerRank.DEFAULT;
     }
 
-    public void loadRank(UUID uuid) {
-        plugin.getDatabase().getPlayerRank(uuid).whenComplete((playerRank, throwable) -> {
-            if (throwable == null) {
-                ranks.put(uuid, playerRank);
-                logger.info("Loaded rank " + playerRank + " for " + uuid);
-            } else {
-                ranks.put(uuid, PlayerRank.DEFAULT);
-            }
+    /**
+     * Gets the rank of the player, loading it from the database if it isn't cached
+     *
+     * @param uuid the uuid of the player
+     * @return a future holding the rank of the player, {@link PlayerRank#DEFAULT} if it couldn't be loaded
+     */
+    public CompletableFuture<PlayerRank> getRankAsync(UUID uuid) {
+        return ranks.get(uuid).exceptionally(throwable -> {
+            logger.error("Failed to load the rank of {}", uuid, throwable);
+            return PlayerRank.DEFAULT;
         });
     }
 
+    /**
+     * Reloads the rank of the player from the database
+     *
+     * @param uuid the uuid of the player
+     */
+    public void loadRank(UUID uuid) {
+        ranks.synchronous().invalidate(uuid);
+        getRankAsync(uuid).thenAccept(playerRank -> logger.info("Loaded rank {} for {}", playerRank, uuid));
+    }
+
+    /**
+     * Drops the cached rank of the player, e.g. when they leave this proxy
+     *
+     * @param uuid the uuid of the player
+     */
+    public void unloadRank(UUID uuid) {
+        ranks.synchronous().invalidate(uuid);
+    }
 
+    /**
+     * Handles a rank change made anywhere in the network. Cached ranks are updated in place, and players on this
+     * proxy are reloaded if the new rank isn't known.
+     *
+     * @param uuid the uuid of the player
+     * @param rank the new rank, or null if it has to be fetched again
+     */
+    public void onRankChanged(UUID uuid, @Nullable PlayerRank rank) {
+        boolean online = plugin.getProxy().getPlayer(uuid).isPresent();
+        if (rank == null) {
+            if (online) {
+                loadRank(uuid);
+            } else {
+                unloadRank(uuid);
+            }
+            return;
+        }
+        if (online) {
+            setRank(uuid, rank);
+        } else {
+            ranks.synchronous().asMap().replace(uuid, rank);
+        }
+    }
 }
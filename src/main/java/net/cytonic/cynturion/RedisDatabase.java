@@ -1,21 +1,53 @@
 package net.cytonic.cynturion;
 
 import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
 import com.velocitypowered.api.proxy.server.ServerInfo;
+import lombok.Getter;
 import net.cytonic.containers.PlayerChangeServerContainer;
 import net.cytonic.containers.PlayerLoginLogoutContainer;
+import net.cytonic.cynturion.messaging.BinaryCodec;
+import net.cytonic.cynturion.messaging.RedisScript;
+import net.cytonic.cynturion.messaging.StreamTransport;
+import net.cytonic.cynturion.messaging.StripedExecutor;
+import net.cytonic.cynturion.messaging.pubsub.MessageHandler;
+import net.cytonic.cynturion.messaging.SubscriptionSupervisor;
+import net.cytonic.cynturion.messaging.pubsub.BanInvalidation;
 import net.cytonic.cynturion.messaging.pubsub.PlayerKick;
 import net.cytonic.cynturion.messaging.pubsub.PlayerSend;
+import net.cytonic.cynturion.messaging.pubsub.PubSubRouter;
+import net.cytonic.cynturion.messaging.pubsub.RankChange;
 import net.cytonic.cynturion.messaging.pubsub.ServerStatus;
+import net.cytonic.cynturion.messaging.pubsub.StripedHandler;
+import net.cytonic.enums.PlayerRank;
 import net.cytonic.objects.CytonicServer;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.ConnectionPoolConfig;
 import redis.clients.jedis.DefaultJedisClientConfig;
 import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.JedisClientConfig;
 import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.RedisProtocol;
+import redis.clients.jedis.csc.Cache;
+import redis.clients.jedis.csc.CacheConfig;
+import redis.clients.jedis.csc.CacheStats;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
 
 import java.net.InetSocketAddress;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class RedisDatabase {
 
@@ -35,6 +67,15 @@ public class RedisDatabase {
      * Cached Servers
      */
     public static final String ONLINE_SERVER_KEY = "online_servers";
+    /**
+     * Which proxy each online player is on, uuid -> proxy id
+     */
+    public static final String PLAYER_PROXY_KEY = "player_proxy";
+    /**
+     * Prefix of the per-proxy presence hashes, uuid -> server name or "none". Each one expires unless its proxy keeps
+     * refreshing it.
+     */
+    public static final String PROXY_PRESENCE_PREFIX = "proxy_presence:";
     /**
      * Player change servers channel
      */
@@ -55,15 +96,83 @@ public class RedisDatabase {
      * Player kick
      */
     public static final String PLAYER_KICK = "player-kick";
+    /**
+     * A player was banned or unbanned, the message is their uuid
+     */
+    public static final String BAN_INVALIDATION_CHANNEL = "ban_invalidation";
+    /**
+     * A player's rank changed
+     */
+    public static final String PLAYER_RANK_CHANGE_CHANNEL = "player_rank_change";
+
+    // KEYS: name set, uuid set, presence hash, proxy index | ARGV: channel, message, name, uuid, proxy id, ttl
+    private static final RedisScript LOGIN_SCRIPT = new RedisScript("""
+            redis.call('SADD', KEYS[1], ARGV[3])
+            redis.call('SADD', KEYS[2], ARGV[4])
+            redis.call('HSET', KEYS[3], ARGV[4], 'none')
+            redis.call('EXPIRE', KEYS[3], ARGV[6])
+            redis.call('HSET', KEYS[4], ARGV[4], ARGV[5])
+            redis.call('PUBLISH', ARGV[1], ARGV[2])
+            return 1
+            """);
+    // KEYS: name set, uuid set, server set, presence hash, proxy index | ARGV: channel, message, name, uuid, server entry or '', proxy id
+    private static final RedisScript LOGOUT_SCRIPT = new RedisScript("""
+            redis.call('SREM', KEYS[1], ARGV[3])
+            redis.call('SREM', KEYS[2], ARGV[4])
+            if ARGV[5] ~= '' then redis.call('SREM', KEYS[3], ARGV[5]) end
+            redis.call('HDEL', KEYS[4], ARGV[4])
+            -- the player may already have logged in through another proxy
+            if redis.call('HGET', KEYS[5], ARGV[4]) == ARGV[6] then redis.call('HDEL', KEYS[5], ARGV[4]) end
+            redis.call('PUBLISH', ARGV[1], ARGV[2])
+            return 1
+            """);
+    // KEYS: server set, presence hash | ARGV: channel, message, old server entry or '', new server entry, uuid, server name, ttl
+    private static final RedisScript CHANGE_SERVER_SCRIPT = new RedisScript("""
+            if ARGV[3] ~= '' then redis.call('SREM', KEYS[1], ARGV[3]) end
+            redis.call('SADD', KEYS[1], ARGV[4])
+            redis.call('HSET', KEYS[2], ARGV[5], ARGV[6])
+            redis.call('EXPIRE', KEYS[2], ARGV[7])
+            redis.call('PUBLISH', ARGV[1], ARGV[2])
+            return 1
+            """);
 
     private final ExecutorService worker = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService coalescer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("cynturion-redis-coalescer").daemon().factory());
+    private final Map<UUID, PendingServerChange> pendingServerChanges = new ConcurrentHashMap<>();
     // cache client
     private final JedisPooled jedis;
+    // reads of keys that change on every login and switch, which a client cache would only churn on; the cache
+    // client itself when client caching is off
+    private final JedisPooled jedisUncached;
     // publish client
     private final JedisPooled jedisPub;
     // subscribe client
     private final JedisPooled jedisSub;
     private final Cynturion plugin;
+    @Getter
+    private final String proxyId;
+    private final String presenceKey;
+    // the broadcast channels published in the binary format, see CynturionSettings#REDIS_BINARY_CHANNELS
+    private final Set<String> binaryChannels;
+    // only ever refreshes the presence of this proxy, so a slow pass elsewhere can't let it expire
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("cynturion-redis-heartbeat").daemon().factory());
+    // the reconcile and pruning passes, which walk whole keyspaces
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("cynturion-redis-maintenance").daemon().factory());
+    // routes every subscribed channel over one connection
+    @Getter
+    private final PubSubRouter router;
+    // keeps the router subscribed across connection drops
+    @Getter
+    private final SubscriptionSupervisor supervisor;
+    // carries server status, send and kick messages when streams are enabled, otherwise null
+    @Nullable
+    private final StreamTransport streams;
+    // the stream transport's own client, so its blocking reader never waits on the subscriber's pool
+    @Nullable
+    private final JedisPooled jedisStreams;
+    // runs player command handlers off the subscriber thread
+    @Getter
+    private final StripedExecutor handlerExecutor;
 
     /**
      * Initializes the connection to redis using the loaded settings and the Jedis client
@@ -72,13 +181,162 @@ public class RedisDatabase {
         this.plugin = plugin;
         HostAndPort hostAndPort = new HostAndPort(CynturionSettings.REDIS_HOST, 6379);
         JedisClientConfig config = DefaultJedisClientConfig.builder().password(CynturionSettings.REDIS_PASSWORD).build();
-        this.jedis = new JedisPooled(hostAndPort, config);
+        if (CynturionSettings.REDIS_CLIENT_CACHE) {
+            // tracking needs RESP3, Redis then pushes invalidations for every key read through the cache
+            JedisClientConfig trackingConfig = DefaultJedisClientConfig.builder().password(CynturionSettings.REDIS_PASSWORD).protocol(RedisProtocol.RESP3).build();
+            this.jedis = new JedisPooled(hostAndPort, trackingConfig, CacheConfig.builder().maxSize(CynturionSettings.REDIS_CLIENT_CACHE_SIZE).build());
+            this.jedisUncached = new JedisPooled(hostAndPort, config);
+        } else {
+            this.jedis = new JedisPooled(hostAndPort, config);
+            this.jedisUncached = jedis;
+        }
         this.jedisPub = new JedisPooled(hostAndPort, config);
         this.jedisSub = new JedisPooled(hostAndPort, config);
-        System.out.println("Connected to redis... Subscribin.");
-        worker.submit(() -> jedisSub.subscribe(new ServerStatus(plugin, this), SERVER_STATUS_CHANNEL));
-        worker.submit(() -> jedisSub.subscribe(new PlayerSend(plugin), PLAYER_SEND_CHANNEL));
-        worker.submit(() -> jedisSub.subscribe(new PlayerKick(plugin), PLAYER_KICK));
+        // a set PROXY_ID, or the HOSTNAME it defaults to, is taken to survive restarts; a random id never does
+        boolean stableId = CynturionSettings.PROXY_ID != null;
+        if (stableId) {
+            this.proxyId = CynturionSettings.PROXY_ID;
+        } else {
+            this.proxyId = STR."proxy-\{UUID.randomUUID()}";
+            plugin.getLogger().warn("Neither PROXY_ID nor HOSTNAME is set, running as {} which won't survive a restart", proxyId);
+        }
+        this.presenceKey = PROXY_PRESENCE_PREFIX + proxyId;
+        this.router = new PubSubRouter(plugin.getLogger());
+        this.handlerExecutor = new StripedExecutor("cynturion-redis-handler-", CynturionSettings.REDIS_HANDLER_THREADS, CynturionSettings.REDIS_HANDLER_QUEUE_CAPACITY,
+                StripedExecutor.OverflowPolicy.valueOf(CynturionSettings.REDIS_HANDLER_OVERFLOW.toUpperCase()), CynturionSettings.REDIS_HANDLER_OFFER_TIMEOUT, plugin.getLogger());
+        MessageHandler playerSend = new StripedHandler(handlerExecutor, new PlayerSend(plugin));
+        MessageHandler playerKick = new StripedHandler(handlerExecutor, new PlayerKick(plugin));
+        if (CynturionSettings.REDIS_STREAMS && !stableId) {
+            plugin.getLogger().error("REDIS_STREAMS needs PROXY_ID or HOSTNAME set to an id that survives restarts, falling back to pub/sub");
+        }
+        if (CynturionSettings.REDIS_STREAMS && stableId) {
+            // one connection for the blocking reader, one per handler thread acknowledging its entry, and one for
+            // publishing and pruning
+            ConnectionPoolConfig poolConfig = new ConnectionPoolConfig();
+            poolConfig.setMaxTotal(CynturionSettings.REDIS_HANDLER_THREADS + 2);
+            poolConfig.setMaxIdle(CynturionSettings.REDIS_HANDLER_THREADS + 2);
+            this.jedisStreams = new JedisPooled(hostAndPort, config, poolConfig);
+            // the transport stripes its entries itself, so it can acknowledge each one after its handler ran
+            this.streams = new StreamTransport(jedisStreams, plugin.getLogger(), proxyId, handlerExecutor);
+            streams.register(SERVER_STATUS_CHANNEL, new ServerStatus(plugin, this));
+            streams.register(PLAYER_SEND_CHANNEL, new PlayerSend(plugin));
+            streams.register(PLAYER_KICK, new PlayerKick(plugin));
+            streams.start();
+        } else {
+            this.jedisStreams = null;
+            this.streams = null;
+        }
+        if (streams == null || CynturionSettings.REDIS_STREAMS_PUBSUB_FALLBACK) {
+            router.register(SERVER_STATUS_CHANNEL, new ServerStatus(plugin, this));
+            router.register(PLAYER_SEND_CHANNEL, playerSend);
+            router.register(PLAYER_KICK, playerKick);
+        }
+        // commands addressed to the players of this proxy only
+        router.register(proxyChannel(PLAYER_SEND_CHANNEL, proxyId), playerSend);
+        router.register(proxyChannel(PLAYER_KICK, proxyId), playerKick);
+        BanInvalidation banInvalidation = new BanInvalidation(plugin);
+        RankChange rankChange = new RankChange(plugin);
+        router.register(BAN_INVALIDATION_CHANNEL, banInvalidation);
+        router.register(binaryChannel(BAN_INVALIDATION_CHANNEL), banInvalidation);
+        router.register(PLAYER_RANK_CHANGE_CHANNEL, rankChange);
+        router.register(binaryChannel(PLAYER_RANK_CHANGE_CHANNEL), rankChange);
+        this.binaryChannels = Arrays.stream(CynturionSettings.REDIS_BINARY_CHANNELS.split(",")).map(String::trim).filter(channel -> !channel.isEmpty()).collect(Collectors.toSet());
+        plugin.getLogger().info("Connected to redis, subscribing");
+        this.supervisor = new SubscriptionSupervisor(jedisSub, router, plugin.getLogger(), this::reconcileServers);
+        supervisor.start();
+        long interval = Math.max(1, CynturionSettings.REDIS_PRESENCE_TTL / 3);
+        heartbeat.scheduleAtFixedRate(this::refreshPresence, interval, interval, TimeUnit.SECONDS);
+        PresenceReconciler reconciler = new PresenceReconciler(plugin, this, jedis);
+        // the first pass clears whatever a previous run of this proxy left behind
+        maintenance.scheduleWithFixedDelay(reconciler::reconcile, 0, CynturionSettings.REDIS_RECONCILE_INTERVAL, TimeUnit.SECONDS);
+        if (streams != null) {
+            maintenance.scheduleWithFixedDelay(streams::pruneGroups, 0, CynturionSettings.REDIS_RECONCILE_INTERVAL, TimeUnit.SECONDS);
+        }
+    }
+
+    // keeps this proxy's presence hash alive; if the proxy dies, its players drop out once the ttl runs out
+    private void refreshPresence() {
+        try {
+            // EXPIRE does nothing on a hash that is already gone, e.g. after an outage longer than the ttl
+            if (jedis.expire(presenceKey, CynturionSettings.REDIS_PRESENCE_TTL) == 0) {
+                Map<String, String> local = localPresence();
+                if (!local.isEmpty()) {
+                    plugin.getLogger().warn("The presence of this proxy expired, restoring {} players", local.size());
+                    restorePresence(local);
+                }
+            }
+        } catch (Exception e) {
+            plugin.getLogger().warn("Failed to refresh the presence of this proxy: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return uuid -> server name or "none", for every player on this proxy
+     */
+    Map<String, String> localPresence() {
+        Map<String, String> local = new HashMap<>();
+        for (Player player : plugin.getProxy().getAllPlayers()) {
+            local.put(player.getUniqueId().toString(), player.getCurrentServer().map(server -> server.getServerInfo().getName()).orElse("none"));
+        }
+        return local;
+    }
+
+    /**
+     * Writes the presence of this proxy's players back, in one pipeline
+     *
+     * @param local uuid -> server name or "none", as returned by {@link #localPresence()}
+     */
+    void restorePresence(Map<String, String> local) {
+        if (local.isEmpty()) return;
+        Map<String, String> owners = new HashMap<>();
+        local.keySet().forEach(uuid -> owners.put(uuid, proxyId));
+        try (Pipeline pipeline = jedis.pipelined()) {
+            pipeline.hset(presenceKey, local);
+            pipeline.expire(presenceKey, CynturionSettings.REDIS_PRESENCE_TTL);
+            pipeline.hset(PLAYER_PROXY_KEY, owners);
+            pipeline.sadd(ONLINE_PLAYER_UUID_KEY, local.keySet().toArray(String[]::new));
+            pipeline.sync();
+        }
+    }
+
+    /**
+     * @return the hit and miss counts of the local Redis cache, or null if {@link CynturionSettings#REDIS_CLIENT_CACHE}
+     * is off
+     */
+    @Nullable
+    public CacheStats getClientCacheStats() {
+        Cache cache = jedis.getCache();
+        return cache == null ? null : cache.getStats();
+    }
+
+    /**
+     * Finds the proxy a player is on. Players whose proxy stopped heartbeating are reported as offline.
+     *
+     * @param uuid the player
+     * @return the id of the proxy, or empty if the player isn't online
+     */
+    public Optional<String> getPlayerProxy(UUID uuid) {
+        String proxy = jedisUncached.hget(PLAYER_PROXY_KEY, uuid.toString());
+        if (proxy == null || !jedisUncached.hexists(PROXY_PRESENCE_PREFIX + proxy, uuid.toString())) return Optional.empty();
+        return Optional.of(proxy);
+    }
+
+    /**
+     * @param channel a broadcast channel, {@link #BAN_INVALIDATION_CHANNEL} or {@link #PLAYER_RANK_CHANGE_CHANNEL}
+     * @return the channel carrying the channel's messages in the {@link BinaryCodec} format. Only proxies that read the
+     * format subscribe to it, so readers of the text channel never see a binary message.
+     */
+    public static String binaryChannel(String channel) {
+        return STR."\{channel}:binary";
+    }
+
+    /**
+     * @param channel a player command channel, {@link #PLAYER_SEND_CHANNEL} or {@link #PLAYER_KICK}
+     * @param proxyId the proxy
+     * @return the channel that only the given proxy listens on
+     */
+    public static String proxyChannel(String channel, String proxyId) {
+        return STR."\{channel}:\{proxyId}";
     }
 
     /**
@@ -88,9 +346,9 @@ public class RedisDatabase {
      */
     public void sendLoginMessage(Player player) {
         PlayerLoginLogoutContainer container = new PlayerLoginLogoutContainer(player.getUsername(), player.getUniqueId(), PlayerLoginLogoutContainer.Type.LOGIN);
-        jedisPub.publish(PLAYER_STATUS_CHANNEL, container.toString());
-        jedis.sadd(ONLINE_PLAYER_NAME_KEY, player.getUsername());
-        jedis.sadd(ONLINE_PLAYER_UUID_KEY, player.getUniqueId().toString());
+        LOGIN_SCRIPT.run(jedis, List.of(ONLINE_PLAYER_NAME_KEY, ONLINE_PLAYER_UUID_KEY, presenceKey, PLAYER_PROXY_KEY),
+                List.of(PLAYER_STATUS_CHANNEL, container.toString(), player.getUsername(), player.getUniqueId().toString(),
+                        proxyId, String.valueOf(CynturionSettings.REDIS_PRESENCE_TTL)));
     }
 
     /**
@@ -100,19 +358,52 @@ public class RedisDatabase {
      */
     public void sendLogoutMessage(Player player) {
         PlayerLoginLogoutContainer container = new PlayerLoginLogoutContainer(player.getUsername(), player.getUniqueId(), PlayerLoginLogoutContainer.Type.LOGOUT);
-        jedisPub.publish(PLAYER_STATUS_CHANNEL, container.toString());
-        jedis.srem(ONLINE_PLAYER_NAME_KEY, player.getUsername());
-        jedis.srem(ONLINE_PLAYER_UUID_KEY, player.getUniqueId().toString());
+        // a switch still waiting to be coalesced was never written, so the last written server is its old one
+        PendingServerChange pending = pendingServerChanges.remove(player.getUniqueId());
+        String lastServer = pending != null ? pending.oldServerName()
+                : player.getCurrentServer().map(server -> server.getServerInfo().getName()).orElse("none");
+        String serverEntry = lastServer.equals("none") ? "" : new PlayerChangeServerContainer(player.getUniqueId(), lastServer).toString();
+        LOGOUT_SCRIPT.run(jedis, List.of(ONLINE_PLAYER_NAME_KEY, ONLINE_PLAYER_UUID_KEY, ONLINE_PLAYER_SERVER_KEY, presenceKey, PLAYER_PROXY_KEY),
+                List.of(PLAYER_STATUS_CHANNEL, container.toString(), player.getUsername(), player.getUniqueId().toString(), serverEntry, proxyId));
     }
 
+    /**
+     * Sends a message in redis that the specified player switched servers. If
+     * {@link CynturionSettings#REDIS_SERVER_CHANGE_COALESCE} is set, switches made in quick succession are merged
+     * into one update from the first old server to the last new one.
+     *
+     * @param player        the player who switched
+     * @param oldServerName the server they left, or "none"
+     * @param newServerName the server they joined
+     */
     public void sendPlayerChangeServerMessage(Player player, String oldServerName, String newServerName) {
-        PlayerChangeServerContainer oldContainer = new PlayerChangeServerContainer(player.getUniqueId(), oldServerName);
-        PlayerChangeServerContainer newContainer = new PlayerChangeServerContainer(player.getUniqueId(), newServerName);
-        jedisPub.publish(PLAYER_SERVER_CHANGE_CHANNEL, newContainer.toString());
-        if (!oldServerName.equals("none")) {
-            jedis.srem(ONLINE_PLAYER_SERVER_KEY, oldContainer.toString());
+        UUID uuid = player.getUniqueId();
+        if (CynturionSettings.REDIS_SERVER_CHANGE_COALESCE <= 0) {
+            writeServerChange(uuid, oldServerName, newServerName);
+            return;
+        }
+        pendingServerChanges.compute(uuid, (k, pending) -> {
+            if (pending != null) return new PendingServerChange(pending.oldServerName(), newServerName);
+            coalescer.schedule(() -> flushServerChange(uuid), CynturionSettings.REDIS_SERVER_CHANGE_COALESCE, TimeUnit.MILLISECONDS);
+            return new PendingServerChange(oldServerName, newServerName);
+        });
+    }
+
+    private void flushServerChange(UUID uuid) {
+        PendingServerChange pending = pendingServerChanges.remove(uuid);
+        if (pending == null || pending.oldServerName().equals(pending.newServerName())) return;
+        try {
+            writeServerChange(uuid, pending.oldServerName(), pending.newServerName());
+        } catch (Exception e) {
+            plugin.getLogger().error("Failed to publish the server switch of {}", uuid, e);
         }
-        jedis.sadd(ONLINE_PLAYER_SERVER_KEY, newContainer.toString());
+    }
+
+    private void writeServerChange(UUID uuid, String oldServerName, String newServerName) {
+        String newEntry = new PlayerChangeServerContainer(uuid, newServerName).toString();
+        String oldEntry = oldServerName.equals("none") ? "" : new PlayerChangeServerContainer(uuid, oldServerName).toString();
+        CHANGE_SERVER_SCRIPT.run(jedis, List.of(ONLINE_PLAYER_SERVER_KEY, presenceKey),
+                List.of(PLAYER_SERVER_CHANGE_CHANNEL, newEntry, oldEntry, newEntry, uuid.toString(), newServerName, String.valueOf(CynturionSettings.REDIS_PRESENCE_TTL)));
     }
 
     /**
@@ -122,18 +413,123 @@ public class RedisDatabase {
      */
     public void sendUnregisterServerMessage(ServerInfo info) {
         // formatting: <START/STOP>|:|<SERVER_ID>|:|<SERVER_IP>|:|<SERVER_PORT>
-        jedisPub.publish(SERVER_STATUS_CHANNEL, STR."STOP|:|\{info.getName()}|:|\{info.getAddress().getAddress().getHostAddress()}|:|\{info.getAddress().getPort()}");
+        publishServerStatus(STR."STOP|:|\{info.getName()}|:|\{info.getAddress().getAddress().getHostAddress()}|:|\{info.getAddress().getPort()}");
+    }
+
+    /**
+     * Tells every proxy to drop its cached ban status of a player
+     *
+     * @param uuid the player who was banned or unbanned
+     */
+    public void sendBanInvalidationMessage(UUID uuid) {
+        if (binaryChannels.contains(BAN_INVALIDATION_CHANNEL)) {
+            jedisPub.publish(binaryChannel(BAN_INVALIDATION_CHANNEL).getBytes(StandardCharsets.UTF_8), BinaryCodec.encodeBanInvalidation(uuid));
+        } else {
+            jedisPub.publish(BAN_INVALIDATION_CHANNEL, uuid.toString());
+        }
+    }
+
+    /**
+     * Tells every proxy that a player's rank changed
+     *
+     * @param uuid the player
+     * @param rank their new rank
+     */
+    public void sendRankChangeMessage(UUID uuid, PlayerRank rank) {
+        if (binaryChannels.contains(PLAYER_RANK_CHANGE_CHANNEL)) {
+            jedisPub.publish(binaryChannel(PLAYER_RANK_CHANGE_CHANNEL).getBytes(StandardCharsets.UTF_8), BinaryCodec.encodeRankChange(uuid, rank.name()));
+        } else {
+            // formatting: <UUID>|:|<RANK>
+            jedisPub.publish(PLAYER_RANK_CHANGE_CHANNEL, STR."\{uuid}|:|\{rank.name()}");
+        }
     }
 
     /**
      * Loads the servers from the SERVER_STATUS_CHANNEL and registers them with the proxy server.
      */
     public void loadServers() {
-        worker.submit(() -> jedis.smembers(ONLINE_SERVER_KEY).forEach(s -> {
+        worker.submit(() -> scanServers(chunk -> chunk.forEach(s -> {
+            CytonicServer server = CytonicServer.deserialize(s);
+            plugin.getLogger().info("Registering the server: {} with the ip and port {}:{}", server.id(), server.ip(), server.port());
+            try {
+                plugin.getProxy().registerServer(new ServerInfo(server.id(), new InetSocketAddress(server.ip(), server.port())));
+            } catch (IllegalArgumentException e) {
+                // a stale entry for a server that came back on another address, removed by the reconciler
+                plugin.getLogger().warn("Skipping the duplicate server entry {}", s);
+            }
+        })));
+    }
+
+    /**
+     * Walks a set in chunks of {@link CynturionSettings#REDIS_SCAN_COUNT} with SSCAN
+     *
+     * @param key   the set
+     * @param chunk called with the members of every chunk
+     */
+    void scan(String key, Consumer<List<String>> chunk) {
+        ScanParams params = new ScanParams().count(CynturionSettings.REDIS_SCAN_COUNT);
+        String cursor = ScanParams.SCAN_POINTER_START;
+        do {
+            ScanResult<String> result = jedis.sscan(key, cursor, params);
+            if (!result.getResult().isEmpty()) chunk.accept(result.getResult());
+            cursor = result.getCursor();
+        } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+    }
+
+    /**
+     * Walks the server registry, {@link #ONLINE_SERVER_KEY}. With {@link CynturionSettings#REDIS_CLIENT_CACHE} on, the
+     * registry is read whole with SMEMBERS, which the client cache serves locally until a server starts or stops;
+     * otherwise it is walked in chunks with SSCAN.
+     *
+     * @param chunk called with the members of every chunk
+     */
+    void scanServers(Consumer<List<String>> chunk) {
+        if (jedis.getCache() == null) {
+            scan(ONLINE_SERVER_KEY, chunk);
+            return;
+        }
+        Set<String> servers = jedis.smembers(ONLINE_SERVER_KEY);
+        if (!servers.isEmpty()) chunk.accept(List.copyOf(servers));
+    }
+
+    /**
+     * Walks the fields of a hash in chunks of {@link CynturionSettings#REDIS_SCAN_COUNT} with HSCAN
+     *
+     * @param key   the hash
+     * @param chunk called with the fields of every chunk
+     */
+    void hscan(String key, Consumer<List<String>> chunk) {
+        ScanParams params = new ScanParams().count(CynturionSettings.REDIS_SCAN_COUNT);
+        String cursor = ScanParams.SCAN_POINTER_START;
+        do {
+            ScanResult<Map.Entry<String, String>> result = jedis.hscan(key, cursor, params);
+            if (!result.getResult().isEmpty()) chunk.accept(result.getResult().stream().map(Map.Entry::getKey).toList());
+            cursor = result.getCursor();
+        } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+    }
+
+    /**
+     * Brings the registered servers back in line with {@link #ONLINE_SERVER_KEY} after the subscription was down, since
+     * any start or stop messages published in the meantime were missed. Servers that appeared are registered, and
+     * grouped servers that are no longer listed are unregistered.
+     */
+    public void reconcileServers() {
+        Set<String> online = new HashSet<>();
+        scanServers(chunk -> chunk.forEach(s -> {
             CytonicServer server = CytonicServer.deserialize(s);
-            System.out.println(STR."Registering the server: \{server.id()} with the ip and port \{server.ip()}:\{server.port()}");
-            plugin.getProxy().registerServer(new ServerInfo(server.id(), new InetSocketAddress(server.ip(), server.port())));
+            online.add(server.id());
+            if (plugin.getProxy().getServer(server.id()).isEmpty()) {
+                plugin.getLogger().info("Registering the server {} missed whilst disconnected", server.id());
+                plugin.getProxy().registerServer(new ServerInfo(server.id(), new InetSocketAddress(server.ip(), server.port())));
+            }
         }));
+        for (RegisteredServer registered : plugin.getProxy().getAllServers()) {
+            String name = registered.getServerInfo().getName();
+            if (online.contains(name) || !plugin.getServerGroupingManager().contains(name)) continue;
+            plugin.getLogger().info("Unregistering the server {} that stopped whilst disconnected", name);
+            plugin.getServerGroupingManager().removeServer(name, null);
+            plugin.getProxy().unregisterServer(registered.getServerInfo());
+        }
     }
 
     /**
@@ -160,7 +556,14 @@ public class RedisDatabase {
     public void sendServerTimeoutMessage(ServerInfo info) {
         // formatting: {server-name}|:|{server-ip}|:|{server-port}
         String message = STR."\{info.getName()}|:|\{info.getAddress().getAddress().getHostAddress()}|:|\{info.getAddress().getPort()}";
+        publishServerStatus(message);
+    }
+
+    // proxies reading only one transport see it once. While the pub/sub fallback is on, stream readers also listen on
+    // pub/sub, so the stream is skipped to not hand them the message twice.
+    private void publishServerStatus(String message) {
         jedisPub.publish(SERVER_STATUS_CHANNEL, message);
+        if (streams != null && !CynturionSettings.REDIS_STREAMS_PUBSUB_FALLBACK) streams.publish(SERVER_STATUS_CHANNEL, message);
     }
 
     /**
@@ -169,6 +572,18 @@ public class RedisDatabase {
      * This method is used to gracefully shut down the connection to the Redis database by calling the `close()` method on the `jedis` object.
      */
     public void shutdown() {
+        supervisor.stop();
+        if (streams != null) streams.stop();
+        handlerExecutor.shutdown();
+        if (jedisStreams != null) jedisStreams.close();
+        coalescer.shutdown();
+        heartbeat.shutdown();
+        maintenance.shutdown();
+        pendingServerChanges.keySet().forEach(this::flushServerChange);
         jedis.close();
+        if (jedisUncached != jedis) jedisUncached.close();
+    }
+
+    private record PendingServerChange(String oldServerName, String newServerName) {
     }
 }
@@ -1,52 +1,255 @@
 package net.cytonic.cynturion;
 
 import com.velocitypowered.api.proxy.server.RegisteredServer;
+import net.cytonic.cynturion.balancing.BalancingStrategy;
+import net.cytonic.cynturion.balancing.ServerLoads;
 import net.cytonic.objects.ServerGroup;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
 
+/**
+ * Tracks which group every backend server belongs to. Membership changes arrive on the Redis threads while fallbacks
+ * are picked on the event threads, so the state is an immutable {@link Snapshot} that writers copy, change and swap in
+ * atomically. Readers never lock, and the fallback tiers are worked out when a snapshot is built, so picking one
+ * only costs what the {@link BalancingStrategy} does with the cached {@link ServerLoads}.
+ * <p>
+ * Fallbacks are tried tier by tier, in the order of {@link CynturionSettings#FALLBACK_TIERS}. Within a tier, servers
+ * under their soft cap are preferred, and servers at their hard cap are skipped. Once every server of a tier is at its
+ * hard cap, players spill over to the next tier. Caps default to {@link CynturionSettings#FALLBACK_SOFT_CAP} and
+ * {@link CynturionSettings#FALLBACK_HARD_CAP}, and {@link CynturionSettings#FALLBACK_CAPS} overrides them per group
+ * or per server.
+ * <p>
+ * Servers the health monitor reports as down are left out of the tiers of the snapshot, so picks never have to test
+ * them.
+ */
 public class ServerGroupingManager {
-    private final List<ServerGroup> serverGroups = new ArrayList<>();
-    private final Map<String, Set<RegisteredServer>> groupedServers = new ConcurrentHashMap<>();
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+    private final ServerLoads loads;
+    private final BalancingStrategy strategy;
+    private final Layout layout;
+
+    public ServerGroupingManager(ServerLoads loads, BalancingStrategy strategy) {
+        this(loads, strategy, CynturionSettings.FALLBACK_TIERS, CynturionSettings.FALLBACK_SOFT_CAP,
+                CynturionSettings.FALLBACK_HARD_CAP, CynturionSettings.FALLBACK_CAPS);
+    }
+
+    /**
+     * @param tiers     comma separated fallback group ids, as in {@link CynturionSettings#FALLBACK_TIERS}
+     * @param softCap   the soft cap of servers without an override
+     * @param hardCap   the hard cap of servers without an override
+     * @param overrides per group or server caps, as in {@link CynturionSettings#FALLBACK_CAPS}
+     */
+    ServerGroupingManager(ServerLoads loads, BalancingStrategy strategy, String tiers, double softCap, double hardCap, String overrides) {
+        this.loads = loads;
+        this.strategy = strategy;
+        List<String> tierOrder = Arrays.stream(tiers.split(",")).map(String::trim).filter(id -> !id.isEmpty()).toList();
+        this.layout = new Layout(tierOrder, new Caps(softCap, hardCap), Caps.parseOverrides(overrides));
+    }
 
     public void addGroupedServer(ServerGroup group, RegisteredServer info) {
-        serverGroups.stream().filter(group1 -> group1.id().equals(group.id())).findAny().ifPresentOrElse(group1 -> {
-        }, () -> {
-            serverGroups.add(group);
+        snapshot.updateAndGet(current -> {
+            List<ServerGroup> groups = current.groups();
+            if (groups.stream().noneMatch(existing -> existing.id().equals(group.id()))) {
+                groups = append(groups, group);
+            }
+            Map<String, RegisteredServer[]> members = new HashMap<>(current.members());
+            RegisteredServer[] servers = members.getOrDefault(group.id(), new RegisteredServer[0]);
+            String name = info.getServerInfo().getName();
+            RegisteredServer[] updated = Arrays.stream(servers).filter(server -> !server.getServerInfo().getName().equals(name)).toArray(RegisteredServer[]::new);
+            updated = Arrays.copyOf(updated, updated.length + 1);
+            updated[updated.length - 1] = info;
+            members.put(group.id(), updated);
+            return Snapshot.of(groups, members, current.unavailable(), layout);
         });
-        Set<RegisteredServer> infos = groupedServers.computeIfAbsent(group.id(), k -> new HashSet<>());
-        infos.add(info);
-        groupedServers.put(group.id(), infos);
     }
 
     public void removeServer(String id, @Nullable ServerGroup group) {
-        if (group == null) {
-            groupedServers.values().forEach(registeredServers -> registeredServers.removeIf(registeredServer -> registeredServer.getServerInfo().getName().equals(id)));
-            return;
+        snapshot.updateAndGet(current -> {
+            Map<String, RegisteredServer[]> members = new HashMap<>(current.members());
+            members.replaceAll((groupId, servers) -> group == null || groupId.equals(group.id())
+                    ? Arrays.stream(servers).filter(server -> !server.getServerInfo().getName().equals(id)).toArray(RegisteredServer[]::new)
+                    : servers);
+            // forgotten along with the server, the next health check marks it again if it comes back down
+            Set<String> unavailable = current.unavailable();
+            if (unavailable.contains(id)) {
+                unavailable = new HashSet<>(unavailable);
+                unavailable.remove(id);
+            }
+            return Snapshot.of(current.groups(), members, unavailable, layout);
+        });
+        loads.remove(id);
+    }
+
+    public boolean contains(String id) {
+        for (RegisteredServer[] servers : snapshot.get().members().values()) {
+            for (RegisteredServer server : servers) {
+                if (server.getServerInfo().getName().equals(id)) return true;
+            }
         }
-        groupedServers.get(group.id()).removeIf(registeredServer -> registeredServer.getServerInfo().getName().equals(id));
+        return false;
     }
 
     public void addServerGroup(ServerGroup group) {
-        serverGroups.add(group);
+        snapshot.updateAndGet(current -> Snapshot.of(append(current.groups(), group), current.members(), current.unavailable(), layout));
+    }
+
+    /**
+     * Takes a server out of the fallback tiers or puts it back. Called with every health check result, the snapshot
+     * is only rebuilt when the server's state changes.
+     *
+     * @param id        the server name
+     * @param available whether players may be sent to it
+     */
+    public void setAvailable(String id, boolean available) {
+        snapshot.updateAndGet(current -> {
+            if (current.unavailable().contains(id) != available) return current;
+            Set<String> unavailable = new HashSet<>(current.unavailable());
+            if (available) {
+                unavailable.remove(id);
+            } else {
+                unavailable.add(id);
+            }
+            return Snapshot.of(current.groups(), current.members(), unavailable, layout);
+        });
     }
 
+    /**
+     * Picks an available server of the first fallback tier that isn't full, balanced by the configured
+     * {@link BalancingStrategy}
+     *
+     * @return the server, or empty if every available fallback server is at its hard cap
+     */
     public Optional<RegisteredServer> chooseFallback() {
-        RegisteredServer info = null;
-        for (ServerGroup group : serverGroups) {
-            if (group.canFallback()) {
-                if (groupedServers.get(group.id()) == null || groupedServers.get(group.id()).isEmpty()) {
-                    continue;
+        return chooseFallback(server -> true);
+    }
+
+    /**
+     * Picks an available server of the first fallback tier that isn't full, among the servers the caller would send a
+     * player to. Unavailable servers are already left out of the tiers, so the predicate is only needed to rule out
+     * particular servers, such as the one a player was kicked from. The pick is counted towards its server's load
+     * right away, so it should only be skipped by the caller if the connection fails.
+     *
+     * @param accept whether the caller can use a server
+     * @return the server, or empty if every accepted fallback server is at its hard cap
+     */
+    public Optional<RegisteredServer> chooseFallback(Predicate<RegisteredServer> accept) {
+        for (Tier tier : snapshot.get().tiers()) {
+            RegisteredServer server = choose(tier, Caps::soft, accept);
+            if (server == null) server = choose(tier, Caps::hard, accept);
+            if (server != null) {
+                loads.recordAssignment(server);
+                return Optional.of(server);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Nullable
+    private RegisteredServer choose(Tier tier, ToDoubleFunction<Caps> cap, Predicate<RegisteredServer> accept) {
+        RegisteredServer server = strategy.choose(tier.servers(), loads);
+        if (tier.fits(server, cap, loads) && accept.test(server)) return server;
+        // only scan the tier when the strategy's pick is unusable, which is rare until the tier fills up
+        RegisteredServer[] eligible = Arrays.stream(tier.servers())
+                .filter(candidate -> tier.fits(candidate, cap, loads) && accept.test(candidate))
+                .toArray(RegisteredServer[]::new);
+        return eligible.length == 0 ? null : strategy.choose(eligible, loads);
+    }
+
+    private static <T> List<T> append(List<T> list, T element) {
+        List<T> copy = new ArrayList<>(list.size() + 1);
+        copy.addAll(list);
+        copy.add(element);
+        return copy;
+    }
+
+    /**
+     * The configured tier order and caps, fixed for the life of the manager
+     *
+     * @param tierOrder the configured fallback group ids, or empty to fall back to every group that allows it, in the
+     *                  order they were added
+     * @param defaults  the caps of servers without an override
+     * @param overrides group or server id -> its caps, a server's own override winning over its group's
+     */
+    private record Layout(List<String> tierOrder, Caps defaults, Map<String, Caps> overrides) {
+        private Caps caps(String groupId, RegisteredServer server) {
+            Caps caps = overrides.get(server.getServerInfo().getName());
+            if (caps == null) caps = overrides.get(groupId);
+            return caps == null ? defaults : caps;
+        }
+    }
+
+    /**
+     * How full a server may get, as fractions of its capacity
+     *
+     * @param soft past this, the other servers of its tier are preferred
+     * @param hard past this, no more players are sent to it
+     */
+    record Caps(double soft, double hard) {
+
+        /**
+         * @param overrides {@code <group or server id>=<soft>:<hard>}, comma separated
+         * @return id -> its caps
+         * @throws IllegalArgumentException if an override is malformed
+         */
+        static Map<String, Caps> parseOverrides(String overrides) {
+            Map<String, Caps> parsed = new HashMap<>();
+            for (String override : overrides.split(",")) {
+                if (override.isBlank()) continue;
+                String[] parts = override.trim().split("[=:]");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException(STR."Expected <id>=<soft>:<hard> but got '\{override.trim()}'");
+                }
+                parsed.put(parts[0].trim(), new Caps(Double.parseDouble(parts[1].trim()), Double.parseDouble(parts[2].trim())));
+            }
+            return Map.copyOf(parsed);
+        }
+    }
+
+    /**
+     * The available servers of one fallback group and the caps of each
+     */
+    private record Tier(RegisteredServer[] servers, IdentityHashMap<RegisteredServer, Caps> caps) {
+        private boolean fits(RegisteredServer server, ToDoubleFunction<Caps> cap, ServerLoads loads) {
+            return loads.get(server).utilization() < cap.applyAsDouble(caps.get(server));
+        }
+    }
+
+    /**
+     * One immutable view of the groups and their servers
+     *
+     * @param groups      the groups, in the order they were added
+     * @param members     group id -> its servers
+     * @param unavailable the servers the health monitor reports as down
+     * @param tiers       the available servers of every fallback group that has any, in tier order, precomputed for
+     *                    {@link #chooseFallback()}
+     */
+    private record Snapshot(List<ServerGroup> groups, Map<String, RegisteredServer[]> members, Set<String> unavailable, Tier[] tiers) {
+        private static final Snapshot EMPTY = new Snapshot(List.of(), Map.of(), Set.of(), new Tier[0]);
+
+        private static Snapshot of(List<ServerGroup> groups, Map<String, RegisteredServer[]> members, Set<String> unavailable, Layout layout) {
+            List<String> order = layout.tierOrder().isEmpty()
+                    ? groups.stream().filter(ServerGroup::canFallback).map(ServerGroup::id).toList()
+                    : layout.tierOrder();
+            List<Tier> tiers = new ArrayList<>(order.size());
+            for (String id : order) {
+                RegisteredServer[] servers = members.get(id);
+                if (servers == null) continue;
+                RegisteredServer[] available = Arrays.stream(servers)
+                        .filter(server -> !unavailable.contains(server.getServerInfo().getName()))
+                        .toArray(RegisteredServer[]::new);
+                if (available.length == 0) continue;
+                IdentityHashMap<RegisteredServer, Caps> caps = new IdentityHashMap<>(available.length);
+                for (RegisteredServer server : available) {
+                    caps.put(server, layout.caps(id, server));
                 }
-                Set<RegisteredServer> set = groupedServers.get(group.id());
-                int randomIndex = new Random().nextInt(set.size());
-                // get random server
-                info = set.stream().skip(randomIndex).findFirst().orElse(null);
-                break;
+                tiers.add(new Tier(available, caps));
             }
+            return new Snapshot(List.copyOf(groups), Map.copyOf(members), Set.copyOf(unavailable), tiers.toArray(Tier[]::new));
         }
-        return Optional.ofNullable(info);
     }
 }
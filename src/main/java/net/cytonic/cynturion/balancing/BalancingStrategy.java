@@ -0,0 +1,82 @@
+package net.cytonic.cynturion.balancing;
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How a player is assigned to one of the servers of a group. Every strategy works on cached loads only.
+ */
+public enum BalancingStrategy {
+    /**
+     * A uniformly random server, ignoring load
+     */
+    RANDOM {
+        @Override
+        public RegisteredServer choose(RegisteredServer[] servers, ServerLoads loads) {
+            return servers[ThreadLocalRandom.current().nextInt(servers.length)];
+        }
+    },
+    /**
+     * The least utilized server. Checks every server, so it is best kept for small groups.
+     */
+    LEAST_CONNECTIONS {
+        @Override
+        public RegisteredServer choose(RegisteredServer[] servers, ServerLoads loads) {
+            RegisteredServer best = servers[0];
+            double lowest = loads.get(best).utilization();
+            for (int i = 1; i < servers.length; i++) {
+                double utilization = loads.get(servers[i]).utilization();
+                if (utilization < lowest) {
+                    best = servers[i];
+                    lowest = utilization;
+                }
+            }
+            return best;
+        }
+    },
+    /**
+     * The less utilized of two random servers. Spreads nearly as evenly as {@link #LEAST_CONNECTIONS} at a constant
+     * cost, and doesn't send every join to the same server while the cached counts are stale.
+     */
+    POWER_OF_TWO {
+        @Override
+        public RegisteredServer choose(RegisteredServer[] servers, ServerLoads loads) {
+            if (servers.length == 1) return servers[0];
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(servers.length);
+            // a second index that is never the first
+            int second = (first + 1 + random.nextInt(servers.length - 1)) % servers.length;
+            return loads.get(servers[first]).utilization() <= loads.get(servers[second]).utilization() ? servers[first] : servers[second];
+        }
+    },
+    /**
+     * A random server, weighted by its free capacity, so larger servers take proportionally more players
+     */
+    WEIGHTED {
+        @Override
+        public RegisteredServer choose(RegisteredServer[] servers, ServerLoads loads) {
+            long total = 0;
+            long[] free = new long[servers.length];
+            for (int i = 0; i < servers.length; i++) {
+                ServerLoads.Load load = loads.get(servers[i]);
+                free[i] = Math.max(0, load.capacity() - load.players());
+                total += free[i];
+            }
+            if (total == 0) return RANDOM.choose(servers, loads);
+            long pick = ThreadLocalRandom.current().nextLong(total);
+            for (int i = 0; i < servers.length; i++) {
+                pick -= free[i];
+                if (pick < 0) return servers[i];
+            }
+            return servers[servers.length - 1];
+        }
+    };
+
+    /**
+     * @param servers the candidates, never empty
+     * @param loads   the cached loads
+     * @return the server to assign the player to
+     */
+    public abstract RegisteredServer choose(RegisteredServer[] servers, ServerLoads loads);
+}
@@ -0,0 +1,83 @@
+package net.cytonic.cynturion.balancing;
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import net.cytonic.cynturion.CynturionSettings;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cached player counts and capacities of the backend servers, so balancing never has to ask a server anything.
+ * Counts are refreshed every {@link CynturionSettings#FALLBACK_LOAD_REFRESH} milliseconds and bumped as soon as a
+ * player is assigned, so a burst of joins between two refreshes doesn't all land on the same server.
+ */
+public class ServerLoads {
+
+    private final Map<String, Load> loads = new ConcurrentHashMap<>();
+
+    /**
+     * Reads the player counts of the given servers into the cache
+     *
+     * @param servers the registered servers
+     */
+    public void refresh(Iterable<RegisteredServer> servers) {
+        for (RegisteredServer server : servers) {
+            int players = server.getPlayersConnected().size();
+            loads.compute(server.getServerInfo().getName(), (name, load) ->
+                    new Load(players, load == null ? CynturionSettings.FALLBACK_DEFAULT_CAPACITY : load.capacity()));
+        }
+    }
+
+    /**
+     * Records the capacity a server reported
+     *
+     * @param server   the server name
+     * @param capacity the most players it takes
+     */
+    public void setCapacity(String server, int capacity) {
+        loads.compute(server, (name, load) -> new Load(load == null ? 0 : load.players(), Math.max(1, capacity)));
+    }
+
+    /**
+     * Counts a player that was just sent to a server, until the next refresh replaces the count
+     *
+     * @param server the server
+     */
+    public void recordAssignment(RegisteredServer server) {
+        loads.compute(server.getServerInfo().getName(), (name, load) -> load == null
+                ? new Load(1, CynturionSettings.FALLBACK_DEFAULT_CAPACITY)
+                : new Load(load.players() + 1, load.capacity()));
+    }
+
+    /**
+     * Drops a server that was unregistered
+     *
+     * @param server the server name
+     */
+    public void remove(String server) {
+        loads.remove(server);
+    }
+
+    /**
+     * @param server the server
+     * @return its cached load, or an empty server with the default capacity if it was never seen
+     */
+    public Load get(RegisteredServer server) {
+        Load load = loads.get(server.getServerInfo().getName());
+        return load == null ? new Load(0, CynturionSettings.FALLBACK_DEFAULT_CAPACITY) : load;
+    }
+
+    /**
+     * @param players  the players on the server
+     * @param capacity the most players it takes
+     */
+    public record Load(int players, int capacity) {
+
+        /**
+         * @return how full the server is, 1 meaning full
+         */
+        public double utilization() {
+            return (double) players / capacity;
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package net.cytonic.cynturion.commands;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.velocitypowered.api.command.SimpleCommand;
 import com.velocitypowered.api.proxy.Player;
 import net.cytonic.cynturion.Cynturion;
+import net.cytonic.cynturion.data.StatementRegistry;
+import net.cytonic.cynturion.messaging.StripedExecutor;
+import net.cytonic.cynturion.messaging.SubscriptionSupervisor;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 
@@ -22,6 +26,27 @@ public class PoddetailsCommand implements SimpleCommand {
                 return;
             }
             player.sendMessage(Component.text("Pod Name: " + System.getenv("HOSTNAME"), NamedTextColor.YELLOW));
+            CacheStats bans = plugin.getDatabase().getBanCache().stats();
+            player.sendMessage(Component.text("Ban cache: " + bans.hitCount() + " hits, " + bans.missCount() + " misses", NamedTextColor.GRAY));
+            StatementRegistry statements = plugin.getDatabase().getStatements();
+            player.sendMessage(Component.text("Statements: " + statements.getFirstPrepareCount() + " first prepares, " + statements.getRepeatPrepareCount() + " repeat prepares, "
+                    + statements.getOpenHandleCount() + " open, " + statements.getLeakedHandleCount() + " leaked", NamedTextColor.GRAY));
+            SubscriptionSupervisor subscription = plugin.getRedis().getSupervisor();
+            player.sendMessage(Component.text("Redis subscription: " + (subscription.isConnected() ? "connected" : "disconnected") + ", "
+                    + subscription.getReconnectCount() + " reconnects, " + subscription.getDisconnectedMillis() + "ms disconnected", NamedTextColor.GRAY));
+            redis.clients.jedis.csc.CacheStats clientCache = plugin.getRedis().getClientCacheStats();
+            if (clientCache != null) {
+                player.sendMessage(Component.text("Redis client cache: " + clientCache.getHitCount() + " hits, " + clientCache.getMissCount() + " misses, "
+                        + clientCache.getInvalidationCount() + " invalidations", NamedTextColor.GRAY));
+            }
+            StripedExecutor handlers = plugin.getRedis().getHandlerExecutor();
+            player.sendMessage(Component.text("Redis handlers: " + handlers.getQueueDepth() + " queued, " + handlers.getMaxQueueDepth() + " on the busiest thread, "
+                    + handlers.getDroppedCount() + " dropped", NamedTextColor.GRAY));
+            plugin.getHealthMonitor().getHealth().forEach((server, health) -> player.sendMessage(Component.text(
+                    server + ": " + (health.online() ? "online" : "down") + ", " + health.rttMillis() + "ms, " + health.players() + " players, "
+                            + health.failures() + " failed checks", health.online() ? NamedTextColor.GRAY : NamedTextColor.RED)));
+            plugin.getHandlerMetrics().getTimings().forEach((handler, timing) -> player.sendMessage(Component.text(
+                    String.format("%s: %d calls, %.2fms mean, %.2fms max", handler, timing.getCount(), timing.getMeanMillis(), timing.getMaxMillis()), NamedTextColor.GRAY)));
         }
     }
 }
@@ -0,0 +1,168 @@
+package net.cytonic.cynturion.data;
+
+import net.cytonic.auditlog.Entry;
+import net.cytonic.cynturion.CynturionSettings;
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes auditlog entries in batches from a background thread. Entries are queued in a bounded buffer and written
+ * once {@link CynturionSettings#AUDIT_LOG_BATCH_SIZE} entries are waiting or {@link CynturionSettings#AUDIT_LOG_LINGER}
+ * milliseconds have passed since the first one arrived, whichever comes first.
+ */
+public class AuditLogWriter {
+
+    private final CytonicDatabase database;
+    private final Logger logger;
+    private final BlockingQueue<PendingEntry> queue;
+    private final int batchSize;
+    private final long linger;
+    private final long offerTimeout;
+    // submitters check and offer under the read lock, so no entry can be queued after close() stopped the flusher
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+    private volatile boolean running;
+    private Thread flusher;
+
+    AuditLogWriter(CytonicDatabase database, Logger logger) {
+        this.database = database;
+        this.logger = logger;
+        this.queue = new ArrayBlockingQueue<>(CynturionSettings.AUDIT_LOG_QUEUE_CAPACITY);
+        this.batchSize = CynturionSettings.AUDIT_LOG_BATCH_SIZE;
+        this.linger = CynturionSettings.AUDIT_LOG_LINGER;
+        this.offerTimeout = CynturionSettings.AUDIT_LOG_OFFER_TIMEOUT;
+    }
+
+    /**
+     * Starts the background flusher
+     */
+    void start() {
+        running = true;
+        flusher = Thread.ofPlatform().name("cynturion-audit-log").daemon().start(this::run);
+    }
+
+    /**
+     * Queues an entry to be written. If the queue is full, the caller waits up to
+     * {@link CynturionSettings#AUDIT_LOG_OFFER_TIMEOUT} milliseconds for room before the entry is rejected.
+     *
+     * @param entry the entry to write
+     * @return a future that completes once the batch holding the entry is committed
+     */
+    CompletableFuture<Void> submit(Entry entry) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        lifecycle.readLock().lock();
+        try {
+            if (!running) {
+                future.completeExceptionally(new RejectedExecutionException("The auditlog writer is not running"));
+                return future;
+            }
+            if (!queue.offer(new PendingEntry(entry, future), offerTimeout, TimeUnit.MILLISECONDS)) {
+                logger.error("The auditlog queue is full, dropping an entry for {}", entry.uuid());
+                future.completeExceptionally(new RejectedExecutionException("The auditlog queue is full"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+        return future;
+    }
+
+    /**
+     * Stops accepting entries and waits for everything already queued to be written
+     *
+     * @param timeout the maximum number of milliseconds to wait for the final flush
+     */
+    void close(long timeout) {
+        lifecycle.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+        if (flusher == null) return;
+        try {
+            flusher.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            logger.warn("Timed out flushing the auditlog, {} entries were not written", queue.size());
+        }
+    }
+
+    private void run() {
+        List<PendingEntry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEntry first = queue.poll(linger, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(linger);
+                while (batch.size() < batchSize && running) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    PendingEntry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                // while shutting down, write whatever is left without waiting
+                queue.drainTo(batch, batchSize - batch.size());
+            } catch (InterruptedException e) {
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingEntry> batch) {
+        try (Connection connection = database.borrow()) {
+            connection.setAutoCommit(false);
+            try (StatementRegistry.Handle handle = database.prepare(connection, StatementRegistry.Query.AUDIT_LOG_INSERT)) {
+                for (PendingEntry pending : batch) {
+                    addBatch(handle.statement(), pending.entry());
+                }
+                handle.statement().executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            batch.forEach(pending -> pending.future().complete(null));
+        } catch (SQLException e) {
+            logger.error("An error occurred whilst writing {} auditlog entries!", batch.size(), e);
+            batch.forEach(pending -> pending.future().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Binds an entry to a prepared {@link StatementRegistry.Query#AUDIT_LOG_INSERT} and adds it to the statement's batch
+     *
+     * @param ps    the prepared insert
+     * @param entry the entry to add
+     * @throws SQLException if the entry could not be bound
+     */
+    static void addBatch(PreparedStatement ps, Entry entry) throws SQLException {
+        ps.setString(1, entry.uuid().toString());
+        ps.setString(2, entry.reason());
+        ps.setString(3, entry.category().name());
+        ps.setString(4, entry.actor() == null ? null : entry.actor().toString());
+        ps.addBatch();
+    }
+
+    private record PendingEntry(Entry entry, CompletableFuture<Void> future) {
+    }
+}
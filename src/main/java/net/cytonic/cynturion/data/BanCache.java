@@ -0,0 +1,89 @@
+package net.cytonic.cynturion.data;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import net.cytonic.cynturion.CynturionSettings;
+import net.cytonic.objects.BanData;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded cache of ban lookups. Players who are not banned are cached too, since they are the vast majority of
+ * logins. Bans are never kept past their own expiry.
+ */
+public class BanCache {
+
+    private final Cache<UUID, BanData> cache;
+
+    BanCache() {
+        long ttl = TimeUnit.SECONDS.toNanos(CynturionSettings.BAN_CACHE_TTL);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(CynturionSettings.BAN_CACHE_SIZE)
+                .expireAfter(new Expiry<UUID, BanData>() {
+                    @Override
+                    public long expireAfterCreate(UUID key, BanData value, long currentTime) {
+                        if (!value.isBanned() || value.expiry() == null) return ttl;
+                        Duration untilExpiry = Duration.between(Instant.now(), value.expiry());
+                        if (untilExpiry.compareTo(Duration.ofNanos(ttl)) > 0) return ttl;
+                        return Math.max(0, untilExpiry.toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UUID key, BanData value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(UUID key, BanData value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Gets the cached ban status of a player
+     *
+     * @param uuid the player
+     * @return the cached status, or null if it has to be fetched
+     */
+    @Nullable
+    public BanData get(UUID uuid) {
+        return cache.getIfPresent(uuid);
+    }
+
+    /**
+     * Caches a player's ban status
+     *
+     * @param uuid    the player
+     * @param banData their current status
+     */
+    public void put(UUID uuid, BanData banData) {
+        cache.put(uuid, banData);
+    }
+
+    /**
+     * Drops a player's cached status so the next lookup goes to the database
+     *
+     * @param uuid the player
+     */
+    public void invalidate(UUID uuid) {
+        cache.invalidate(uuid);
+    }
+
+    /**
+     * Gets the hit and miss counters of the cache
+     *
+     * @return a snapshot of the cache statistics
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,146 @@
+package net.cytonic.cynturion.data;
+
+import net.cytonic.auditlog.Category;
+import net.cytonic.auditlog.Entry;
+import net.cytonic.cynturion.CynturionSettings;
+import net.cytonic.cynturion.data.StatementRegistry.Query;
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes expired bans in the background, so logins never have to. Expired rows are claimed in chunks with
+ * {@code FOR UPDATE SKIP LOCKED}, which lets every proxy run a sweeper without two of them lifting the same ban.
+ * The matching auditlog entries are written in the same transaction.
+ */
+public class BanSweeper {
+
+    private final CytonicDatabase database;
+    private final Logger logger;
+    private final int chunkSize;
+    private ScheduledExecutorService scheduler;
+
+    BanSweeper(CytonicDatabase database, Logger logger) {
+        this.database = database;
+        this.logger = logger;
+        this.chunkSize = CynturionSettings.BAN_SWEEP_CHUNK;
+    }
+
+    /**
+     * Adds the indexed {@code expires_at} column to {@code cytonic_bans} if it is missing. The column is generated
+     * from the ISO-8601 {@code to_expire} string, so whoever writes bans doesn't have to change anything.
+     */
+    void ensureSchema() {
+        try (Connection connection = database.borrow()) {
+            try (StatementRegistry.Handle handle = database.prepare(connection, Query.COLUMN_EXISTS)) {
+                handle.statement().setString(1, "cytonic_bans");
+                handle.statement().setString(2, "expires_at");
+                ResultSet rs = handle.executeQuery();
+                if (rs.next() && rs.getInt(1) > 0) return;
+            }
+            logger.info("Adding the expires_at column to cytonic_bans");
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("ALTER TABLE cytonic_bans " +
+                        "ADD COLUMN expires_at DATETIME(6) AS (CAST(REPLACE(REPLACE(to_expire, 'T', ' '), 'Z', '') AS DATETIME(6))) VIRTUAL, " +
+                        "ADD INDEX idx_cytonic_bans_expires_at (expires_at)");
+            }
+        } catch (SQLException e) {
+            logger.error("An error occurred whilst adding the expires_at column to cytonic_bans!", e);
+        }
+    }
+
+    /**
+     * Starts sweeping every {@link CynturionSettings#BAN_SWEEP_INTERVAL} seconds
+     */
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("cynturion-ban-sweeper").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::sweep, 0, CynturionSettings.BAN_SWEEP_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the sweeper, letting a running pass finish
+     */
+    void stop() {
+        if (scheduler != null) scheduler.shutdown();
+    }
+
+    private void sweep() {
+        try {
+            int removed;
+            int total = 0;
+            do {
+                removed = sweepChunk();
+                total += removed;
+            } while (removed == chunkSize && !scheduler.isShutdown());
+            if (total > 0) logger.info("Lifted {} expired bans", total);
+        } catch (SQLException | RuntimeException e) {
+            // anything escaping this task would cancel every later sweep
+            logger.error("An error occurred whilst lifting expired bans!", e);
+        }
+    }
+
+    private int sweepChunk() throws SQLException {
+        List<String> rows = new ArrayList<>(chunkSize);
+        List<UUID> expired = new ArrayList<>(chunkSize);
+        try (Connection connection = database.borrow()) {
+            connection.setAutoCommit(false);
+            try {
+                try (StatementRegistry.Handle select = database.prepare(connection, Query.BAN_SELECT_EXPIRED)) {
+                    select.statement().setInt(1, chunkSize);
+                    ResultSet rs = select.executeQuery();
+                    while (rs.next()) {
+                        rows.add(rs.getString("uuid"));
+                    }
+                }
+                if (rows.isEmpty()) {
+                    connection.commit();
+                    return 0;
+                }
+                try (StatementRegistry.Handle delete = database.prepare(connection, Query.BAN_DELETE_BY_UUID);
+                     StatementRegistry.Handle audit = database.prepare(connection, Query.AUDIT_LOG_INSERT)) {
+                    for (String row : rows) {
+                        delete.statement().setString(1, row);
+                        delete.statement().addBatch();
+                        UUID uuid;
+                        try {
+                            uuid = UUID.fromString(row);
+                        } catch (IllegalArgumentException e) {
+                            // still deleted, otherwise it would be claimed again on every pass
+                            logger.warn("Removing an expired ban with the malformed uuid '{}'", row);
+                            continue;
+                        }
+                        expired.add(uuid);
+                        AuditLogWriter.addBatch(audit.statement(), new Entry(uuid, null, Category.UNBAN, "Natural Expiration"));
+                    }
+                    delete.statement().executeBatch();
+                    if (!expired.isEmpty()) audit.statement().executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+        for (UUID uuid : expired) {
+            database.getBanCache().invalidate(uuid);
+            try {
+                database.getPlugin().getRedis().sendBanInvalidationMessage(uuid);
+            } catch (RuntimeException e) {
+                // the ban is already lifted, other proxies only keep serving it until their cached entry expires
+                logger.error("Failed to publish the ban invalidation of {}", uuid, e);
+            }
+        }
+        return rows.size();
+    }
+}
@@ -1,26 +1,27 @@
 package net.cytonic.cynturion.data;
 
-import com.google.inject.Inject;
-import net.cytonic.auditlog.Category;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Getter;
 import net.cytonic.auditlog.Entry;
 import net.cytonic.cynturion.Cynturion;
 import net.cytonic.cynturion.CynturionSettings;
+import net.cytonic.cynturion.data.StatementRegistry.Query;
 import net.cytonic.enums.PlayerRank;
 import net.cytonic.objects.BanData;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 
 import java.sql.*;
-import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.*;
 
 public class CytonicDatabase {
 
-    @Inject
-    private Logger logger;
+    private final Logger logger;
     private final ExecutorService worker;
     private final String host;
     private final int port;
@@ -28,20 +29,36 @@ public class CytonicDatabase {
     private final String username;
     private final String password;
     private final boolean ssl;
-    private Connection connection;
+    private final int poolSize;
+    @Getter
+    private final StatementRegistry statements;
+    private volatile HikariDataSource dataSource;
+    private final Map<UUID, CompletableFuture<LoginProfile>> prefetchedProfiles = new ConcurrentHashMap<>();
+    private final AuditLogWriter auditLogWriter;
+    private final BanSweeper banSweeper;
+    @Getter
+    private final BanCache banCache = new BanCache();
+    @Getter
     private Cynturion plugin;
 
     /**
      * Creates and initializes a new Mysql Database
      */
     public CytonicDatabase(Cynturion plugin) {
-        this.worker = Executors.newSingleThreadExecutor();
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
         this.host = CynturionSettings.DATABASE_HOST;
         this.port = CynturionSettings.DATABASE_PORT;
         this.database = CynturionSettings.DATABASE_NAME;
         this.username = CynturionSettings.DATABASE_USER;
         this.password = CynturionSettings.DATABASE_PASSWORD;
         this.ssl = CynturionSettings.DATABASE_USE_SSL;
+        this.poolSize = CynturionSettings.DATABASE_POOL_SIZE;
+        this.statements = new StatementRegistry(CynturionSettings.DATABASE_QUERY_TIMEOUT);
+        // one worker per pooled connection, so a worker never waits on the pool while another is idle
+        this.worker = Executors.newFixedThreadPool(poolSize, Thread.ofPlatform().name("cynturion-db-", 0).daemon().factory());
+        this.auditLogWriter = new AuditLogWriter(this, logger);
+        this.banSweeper = new BanSweeper(this, logger);
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
         } catch (ClassNotFoundException e) {
@@ -55,23 +72,44 @@ public class CytonicDatabase {
      * @return if the database is connected
      */
     public boolean isConnected() {
-        return (connection != null);
+        return (dataSource != null && !dataSource.isClosed());
     }
 
     /**
      * connects to the database
      *
-     * @return a future that completes when the connection is successful
+     * @return a future that completes when the connection pool is ready
      */
     public CompletableFuture<Void> connect() {
         CompletableFuture<Void> future = new CompletableFuture<>();
         worker.submit(() -> {
             if (!isConnected()) {
+                HikariConfig config = new HikariConfig();
+                config.setPoolName("cynturion-mysql");
+                config.setJdbcUrl(STR."jdbc:mysql://\{host}:\{port}/\{database}?useSSL=\{ssl}&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true");
+                config.setUsername(username);
+                config.setPassword(password);
+                config.setMaximumPoolSize(poolSize);
+                config.setMinimumIdle(poolSize);
+                config.setConnectionTimeout(CynturionSettings.DATABASE_CONNECTION_TIMEOUT);
+                config.setValidationTimeout(Math.min(CynturionSettings.DATABASE_CONNECTION_TIMEOUT, 3000));
+                config.setLeakDetectionThreshold(CynturionSettings.DATABASE_LEAK_DETECTION_THRESHOLD);
+                // keep one server-side prepared statement per query on every pooled connection
+                config.addDataSourceProperty("useServerPrepStmts", "true");
+                config.addDataSourceProperty("cachePrepStmts", "true");
+                config.addDataSourceProperty("prepStmtCacheSize", "64");
+                config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
                 try {
-                    connection = DriverManager.getConnection(STR."jdbc:mysql://\{host}:\{port}/\{database}?useSSL=\{ssl}&autoReconnect=true&allowPublicKeyRetrieval=true", username, password);
+                    dataSource = new HikariDataSource(config);
+                    banSweeper.ensureSchema();
+                    if (CynturionSettings.DATABASE_BINARY_UUIDS && new UuidMigration(this, logger).migrate()) {
+                        statements.configure(true);
+                    }
+                    auditLogWriter.start();
+                    banSweeper.start();
                     logger.info("Successfully connected to the MySQL Database!");
                     future.complete(null);
-                } catch (SQLException e) {
+                } catch (Exception e) {
                     logger.error("Invalid Database Credentials!", e);
                     future.completeExceptionally(e);
                 }
@@ -81,20 +119,46 @@ public class CytonicDatabase {
     }
 
     /**
-     * Disconnects from the database server
+     * Disconnects from the database server, writing any queued auditlog entries first. This blocks until the
+     * final flush is done or has timed out.
      */
     public void disconnect() {
-        worker.submit(() -> {
-            if (isConnected()) {
-                try {
-                    connection.close();
-                    logger.info("Database connection closed!");
-                } catch (SQLException e) {
-                    logger.error("An error occurred whilst disconnecting from the database. Please report the following stacktrace to CytonicMC: ", e);
-                }
-            }
-        });
+        banSweeper.stop();
+        auditLogWriter.close(10_000);
         worker.shutdown();
+        try {
+            if (!worker.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Database workers did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (isConnected()) {
+            dataSource.close();
+            logger.info("Database connection pool closed!");
+        }
+    }
+
+    /**
+     * Borrows a connection from the pool. The caller must close it to return it.
+     *
+     * @return a pooled connection
+     * @throws SQLException if no connection could be borrowed before the pool timeout
+     */
+    Connection borrow() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    /**
+     * Prepares one of the registered queries on a borrowed connection
+     *
+     * @param connection the borrowed connection
+     * @param query      the query to prepare
+     * @return a handle that closes the statement and its result set
+     * @throws SQLException if the statement could not be prepared
+     */
+    StatementRegistry.Handle prepare(Connection connection, StatementRegistry.Query query) throws SQLException {
+        return statements.prepare(connection, query);
     }
 
     /**
@@ -110,18 +174,18 @@ public class CytonicDatabase {
         if (!isConnected())
             throw new IllegalStateException("The database must have an open connection to fetch a player's rank!");
         worker.submit(() -> {
-            try {
-                PreparedStatement ps = connection.prepareStatement("SELECT rank_id FROM cytonic_ranks WHERE uuid = ?");
-                ps.setString(1, uuid.toString());
-                ResultSet rs = ps.executeQuery();
+            try (Connection connection = borrow(); StatementRegistry.Handle handle = prepare(connection, Query.RANK_SELECT)) {
+                handle.bindUuid(1, uuid);
+                ResultSet rs = handle.executeQuery();
                 if (rs.next()) {
                     future.complete(PlayerRank.valueOf(rs.getString("rank_id")));
                 } else {
                     future.complete(PlayerRank.DEFAULT);
-                    setPlayerRank(uuid, PlayerRank.DEFAULT);
+                    storeDefaultRank(uuid);
                 }
             } catch (SQLException e) {
                 logger.error("An error occurred whilst fetching the rank of '{}'", uuid);
+                future.completeExceptionally(e);
             }
         });
         return future;
@@ -136,18 +200,40 @@ public class CytonicDatabase {
      * @throws IllegalStateException if the database isn't connected
      */
     public CompletableFuture<Void> setPlayerRank(UUID uuid, PlayerRank rank) {
+        return writeRank(Query.RANK_UPSERT, uuid, rank, true);
+    }
+
+    /**
+     * Stores {@link PlayerRank#DEFAULT} for a player seen for the first time. Nothing changed for anyone else, so this
+     * isn't broadcast, and a rank that already exists is left alone.
+     *
+     * @param uuid the player
+     */
+    private void storeDefaultRank(UUID uuid) {
+        writeRank(Query.RANK_INSERT_DEFAULT, uuid, PlayerRank.DEFAULT, false);
+    }
+
+    private CompletableFuture<Void> writeRank(Query query, UUID uuid, PlayerRank rank, boolean broadcast) {
         if (!isConnected())
             throw new IllegalStateException("The database must have an open connection to set a player's rank!");
         CompletableFuture<Void> future = new CompletableFuture<>();
         worker.submit(() -> {
-            try {
-                PreparedStatement ps = connection.prepareStatement("INSERT INTO cytonic_ranks (uuid, rank_id) VALUES (?, ?) ON DUPLICATE KEY UPDATE rank_id = VALUES(rank_id)");
-                ps.setString(1, uuid.toString());
-                ps.setString(2, rank.name());
-                ps.executeUpdate();
+            try (Connection connection = borrow(); StatementRegistry.Handle handle = prepare(connection, query)) {
+                int next = handle.bindKey(1, uuid);
+                handle.statement().setString(next, rank.name());
+                handle.statement().executeUpdate();
                 future.complete(null);
             } catch (SQLException e) {
                 logger.error("An error occurred whilst setting the rank of '{}' to '{}", uuid.toString(), rank.name());
+                future.completeExceptionally(e);
+                return;
+            }
+            if (!broadcast) return;
+            // best effort, like the ban invalidation; the other proxies' cached ranks still expire when idle
+            try {
+                plugin.getRedis().sendRankChangeMessage(uuid, rank);
+            } catch (RuntimeException e) {
+                logger.error("Failed to publish the rank change of {}", uuid, e);
             }
         });
         return future;
@@ -161,26 +247,16 @@ public class CytonicDatabase {
      */
     public CompletableFuture<BanData> isBanned(UUID uuid) {
         if (!isConnected()) throw new IllegalStateException("The database must be connected.");
+        BanData cached = banCache.get(uuid);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
         CompletableFuture<BanData> future = new CompletableFuture<BanData>();
+        future.thenAccept(banData -> banCache.put(uuid, banData));
         worker.submit(() -> {
-            try {
-                PreparedStatement ps = connection.prepareStatement("SELECT * FROM cytonic_bans WHERE uuid = ?");
-                ps.setString(1, uuid.toString());
-                ResultSet rs = ps.executeQuery();
+            try (Connection connection = borrow(); StatementRegistry.Handle handle = prepare(connection, Query.BAN_SELECT)) {
+                handle.bindUuid(1, uuid);
+                ResultSet rs = handle.executeQuery();
                 if (rs.next()) {
-                    Instant expiry = Instant.parse(rs.getString("to_expire"));
-                    if (expiry.isBefore(Instant.now())) {
-                        future.complete(new BanData(null, null, false));
-                        unbanPlayer(uuid, new Entry(uuid, null, Category.UNBAN, "Natural Expiration"));
-                    } else {
-                        try {
-                            BanData banData = new BanData(rs.getString("reason"), expiry, true);
-                            future.complete(banData);
-                        } catch (Exception e) {
-                            logger.error(STR."An error occurred whilst determining if the player \{uuid} is banned.", e);
-                            future.complete(new BanData(null, null, true));
-                        }
-                    }
+                    future.complete(readBan(rs.getString("reason"), rs.getObject("expires_at", LocalDateTime.class)));
                 } else {
                     future.complete(new BanData(null, null, false));
                 }
@@ -192,6 +268,90 @@ public class CytonicDatabase {
         return future;
     }
 
+    /**
+     * Fetches the player's ban status and rank in a single statement. If the ban status is cached, only the rank is
+     * fetched. If the player has no stored rank, {@link PlayerRank#DEFAULT} is returned and written back after the
+     * future completes.
+     *
+     * @param uuid the player logging in
+     * @return a future holding the player's {@link LoginProfile}
+     * @throws IllegalStateException if the database isn't connected
+     */
+    public CompletableFuture<LoginProfile> getLoginProfile(UUID uuid) {
+        if (!isConnected()) throw new IllegalStateException("The database must be connected.");
+        CompletableFuture<LoginProfile> future = new CompletableFuture<>();
+        BanData cached = banCache.get(uuid);
+        worker.submit(() -> {
+            try (Connection connection = borrow()) {
+                String rankId;
+                BanData banData;
+                if (cached != null) {
+                    banData = cached;
+                    try (StatementRegistry.Handle handle = prepare(connection, Query.RANK_SELECT)) {
+                        handle.bindUuid(1, uuid);
+                        ResultSet rs = handle.executeQuery();
+                        rankId = rs.next() ? rs.getString("rank_id") : null;
+                    }
+                } else {
+                    try (StatementRegistry.Handle handle = prepare(connection, Query.LOGIN_PROFILE)) {
+                        handle.bindUuid(1, uuid);
+                        ResultSet rs = handle.executeQuery();
+                        rs.next();
+                        rankId = rs.getString("rank_id");
+                        LocalDateTime expiresAt = rs.getObject("expires_at", LocalDateTime.class);
+                        banData = expiresAt == null ? new BanData(null, null, false) : readBan(rs.getString("reason"), expiresAt);
+                    }
+                    banCache.put(uuid, banData);
+                }
+                future.complete(new LoginProfile(banData, rankId == null ? PlayerRank.DEFAULT : PlayerRank.valueOf(rankId)));
+                if (rankId == null) {
+                    storeDefaultRank(uuid);
+                }
+            } catch (SQLException e) {
+                logger.error(STR."An error occurred whilst loading the login profile of \{uuid}.", e);
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Starts loading the player's {@link LoginProfile} ahead of the login, so it is ready by the time
+     * {@link #takeLoginProfile(UUID)} is called. Unclaimed profiles are dropped after 30 seconds.
+     *
+     * @param uuid the player about to log in
+     */
+    public void prefetchLoginProfile(UUID uuid) {
+        if (!isConnected()) return;
+        CompletableFuture<LoginProfile> future = getLoginProfile(uuid);
+        prefetchedProfiles.put(uuid, future);
+        CompletableFuture.delayedExecutor(30, TimeUnit.SECONDS).execute(() -> prefetchedProfiles.remove(uuid, future));
+    }
+
+    /**
+     * Claims the profile started by {@link #prefetchLoginProfile(UUID)}, or fetches it now if there is none
+     *
+     * @param uuid the player logging in
+     * @return a future holding the player's {@link LoginProfile}
+     * @throws IllegalStateException if nothing was prefetched and the database isn't connected
+     */
+    public CompletableFuture<LoginProfile> takeLoginProfile(UUID uuid) {
+        CompletableFuture<LoginProfile> future = prefetchedProfiles.remove(uuid);
+        return future != null ? future : getLoginProfile(uuid);
+    }
+
+    /**
+     * Converts an active ban row into {@link BanData}. Expired bans are filtered out by the query and removed by the
+     * {@link BanSweeper}.
+     *
+     * @param reason    the stored ban reason
+     * @param expiresAt the expiry, in UTC
+     * @return the player's ban status
+     */
+    private BanData readBan(String reason, LocalDateTime expiresAt) {
+        return new BanData(reason, expiresAt.toInstant(ZoneOffset.UTC), true);
+    }
+
     /**
      * Unbans a player
      *
@@ -202,44 +362,35 @@ public class CytonicDatabase {
         if (!isConnected()) throw new IllegalStateException("The database must be connected.");
         CompletableFuture<Void> future = new CompletableFuture<>();
         worker.submit(() -> {
-            try {
+            try (Connection connection = borrow(); StatementRegistry.Handle handle = prepare(connection, Query.BAN_DELETE)) {
                 addAuditLogEntry(entry);
-                PreparedStatement ps = connection.prepareStatement("DELETE FROM cytonic_bans WHERE uuid = ?");
-                ps.setString(1, uuid.toString());
-                ps.executeUpdate();
+                handle.bindUuid(1, uuid);
+                handle.statement().executeUpdate();
+                banCache.invalidate(uuid);
                 future.complete(null);
             } catch (SQLException e) {
                 logger.error(STR."An error occurred whilst unbanning the player \{uuid}.", e);
                 future.completeExceptionally(e);
+                return;
+            }
+            // best effort, the other proxies' cached bans still expire on their own
+            try {
+                plugin.getRedis().sendBanInvalidationMessage(uuid);
+            } catch (RuntimeException e) {
+                logger.error(STR."Failed to publish the ban invalidation of \{uuid}.", e);
             }
         });
         return future;
     }
 
     /**
-     * Adds an auditlog entry
+     * Adds an auditlog entry. Entries are written in batches by the {@link AuditLogWriter}.
      *
      * @param entry The entry to add
      * @return a future that completes when the entry is added
      */
     public CompletableFuture<Void> addAuditLogEntry(Entry entry) {
         if (!isConnected()) throw new IllegalStateException("The database must be connected to add an auditlog entry.");
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        worker.submit(() -> {
-            PreparedStatement ps;
-            try {
-                ps = connection.prepareStatement("INSERT INTO cytonic_audit_log (timestamp, uuid, reason, category, actor) VALUES (CURRENT_TIMESTAMP,?,?,?,?)");
-                ps.setString(1, entry.uuid().toString());
-                ps.setString(2, entry.reason());
-                ps.setString(3, entry.category().name());
-                ps.setString(4, entry.actor().toString());
-                ps.executeUpdate();
-                future.complete(null);
-            } catch (SQLException e) {
-                logger.error("An error occurred whilst adding an auditlog entry!", e);
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        return auditLogWriter.submit(entry);
     }
 }
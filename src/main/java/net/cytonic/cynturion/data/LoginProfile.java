@@ -0,0 +1,13 @@
+package net.cytonic.cynturion.data;
+
+import net.cytonic.enums.PlayerRank;
+import net.cytonic.objects.BanData;
+
+/**
+ * Everything the proxy needs from the database to let a player in, fetched in a single round trip
+ *
+ * @param banData the player's ban status
+ * @param rank    the player's rank, {@link PlayerRank#DEFAULT} if they have none stored
+ */
+public record LoginProfile(BanData banData, PlayerRank rank) {
+}
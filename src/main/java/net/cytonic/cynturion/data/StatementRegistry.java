@@ -0,0 +1,239 @@
+package net.cytonic.cynturion.data;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.lang.ref.Cleaner;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Every statement the proxy runs, and the bookkeeping around preparing them. The driver keeps a server-side
+ * prepared statement per physical connection and hands it back when the same SQL is prepared again, so each
+ * {@link Query} is only parsed once per pooled connection. Statements are opened through {@link Handle}s, which close
+ * the statement and its result set when the try-with-resources block ends.
+ */
+public class StatementRegistry {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private volatile Mode mode;
+    // physical connection -> queries already prepared on it, weakly keyed so evicted connections drop out
+    private final Cache<Connection, Set<Query>> prepared = Caffeine.newBuilder().weakKeys().build();
+    private final LongAdder firstPrepares = new LongAdder();
+    private final LongAdder repeatPrepares = new LongAdder();
+    private final LongAdder openHandles = new LongAdder();
+    private final LongAdder leakedHandles = new LongAdder();
+    private final int queryTimeout;
+
+    StatementRegistry(int queryTimeout) {
+        this.queryTimeout = queryTimeout;
+        configure(false);
+    }
+
+    /**
+     * Builds the SQL of every query for the given player lookup column. The SQL and the way uuids are bound are
+     * swapped together, so a statement is always bound the way it was prepared.
+     *
+     * @param binaryUuids if players are looked up by {@code uuid_bin} rather than {@code uuid}
+     */
+    void configure(boolean binaryUuids) {
+        String uuidColumn = binaryUuids ? "uuid_bin" : "uuid";
+        // rows are written with both forms once keyed by uuid_bin, since other services still read the string
+        String keyColumns = binaryUuids ? "uuid_bin, uuid" : "uuid";
+        String keyValues = binaryUuids ? "?, ?" : "?";
+        Map<Query, String> built = new EnumMap<>(Query.class);
+        for (Query query : Query.values()) {
+            built.put(query, query.template.replace("{uuid}", uuidColumn).replace("{keyColumns}", keyColumns).replace("{keyValues}", keyValues));
+        }
+        mode = new Mode(built, binaryUuids);
+        prepared.invalidateAll();
+    }
+
+    /**
+     * Prepares a query on a borrowed connection, with the configured query timeout applied
+     *
+     * @param connection the borrowed connection
+     * @param query      the query to prepare
+     * @return a handle that must be closed, preferably with try-with-resources
+     * @throws SQLException if the statement could not be prepared
+     */
+    Handle prepare(Connection connection, Query query) throws SQLException {
+        Connection physical = connection.unwrap(Connection.class);
+        Set<Query> seen = prepared.get(physical, k -> EnumSet.noneOf(Query.class));
+        synchronized (seen) {
+            if (seen.add(query)) {
+                firstPrepares.increment();
+            } else {
+                repeatPrepares.increment();
+            }
+        }
+        Mode current = mode;
+        PreparedStatement statement = connection.prepareStatement(current.sql().get(query));
+        statement.setQueryTimeout(queryTimeout);
+        return new Handle(statement, current.binaryUuids());
+    }
+
+    /**
+     * @return how many times a query was prepared on a connection for the first time
+     */
+    public long getFirstPrepareCount() {
+        return firstPrepares.sum();
+    }
+
+    /**
+     * Counts the prepares of a query on a connection it was already prepared on, which the driver's statement cache
+     * can serve. This is the registry's own count, not the driver's cache hits; a statement the driver evicted from
+     * its cache is still counted here.
+     *
+     * @return how many times a query was prepared again on the same connection
+     */
+    public long getRepeatPrepareCount() {
+        return repeatPrepares.sum();
+    }
+
+    /**
+     * @return how many handles are currently open
+     */
+    public long getOpenHandleCount() {
+        return openHandles.sum();
+    }
+
+    /**
+     * @return how many handles were garbage collected without being closed
+     */
+    public long getLeakedHandleCount() {
+        return leakedHandles.sum();
+    }
+
+    /**
+     * Every statement run against the database. {@code {uuid}} is replaced by the player lookup column, and
+     * {@code {keyColumns}} and {@code {keyValues}} by the key columns of an inserted player row and their parameters,
+     * which are bound with {@link Handle#bindKey}.
+     */
+    enum Query {
+        RANK_SELECT("SELECT rank_id FROM cytonic_ranks WHERE {uuid} = ?"),
+        RANK_UPSERT("INSERT INTO cytonic_ranks ({keyColumns}, rank_id) VALUES ({keyValues}, ?) ON DUPLICATE KEY UPDATE rank_id = VALUES(rank_id)"),
+        // leaves an existing rank alone, so a lookup that missed can never overwrite it
+        RANK_INSERT_DEFAULT("INSERT INTO cytonic_ranks ({keyColumns}, rank_id) VALUES ({keyValues}, ?) ON DUPLICATE KEY UPDATE uuid = uuid"),
+        BAN_SELECT("SELECT reason, expires_at FROM cytonic_bans WHERE {uuid} = ? AND expires_at > UTC_TIMESTAMP(6)"),
+        BAN_DELETE("DELETE FROM cytonic_bans WHERE {uuid} = ?"),
+        BAN_SELECT_EXPIRED("SELECT uuid FROM cytonic_bans WHERE expires_at <= UTC_TIMESTAMP(6) ORDER BY expires_at LIMIT ? FOR UPDATE SKIP LOCKED"),
+        BAN_DELETE_BY_UUID("DELETE FROM cytonic_bans WHERE uuid = ?"),
+        LOGIN_PROFILE("SELECT r.rank_id, b.reason, b.expires_at FROM (SELECT ? AS id) AS p " +
+                "LEFT JOIN cytonic_ranks r ON r.{uuid} = p.id " +
+                "LEFT JOIN cytonic_bans b ON b.{uuid} = p.id AND b.expires_at > UTC_TIMESTAMP(6)"),
+        AUDIT_LOG_INSERT("INSERT INTO cytonic_audit_log (timestamp, uuid, reason, category, actor) VALUES (CURRENT_TIMESTAMP,?,?,?,?)"),
+        COLUMN_EXISTS("SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?"),
+        PRIMARY_KEY_COLUMNS("SELECT COLUMN_NAME FROM information_schema.KEY_COLUMN_USAGE WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND CONSTRAINT_NAME = 'PRIMARY' ORDER BY ORDINAL_POSITION"),
+        TRIGGER_EXISTS("SELECT COUNT(*) FROM information_schema.TRIGGERS WHERE TRIGGER_SCHEMA = DATABASE() AND TRIGGER_NAME = ?");
+
+        private final String template;
+
+        Query(String template) {
+            this.template = template;
+        }
+    }
+
+    /**
+     * The SQL of every query and how the player lookup key is bound
+     */
+    private record Mode(Map<Query, String> sql, boolean binaryUuids) {
+    }
+
+    /**
+     * An open statement and the result set it produced. Closing the handle closes both, which returns the statement
+     * to the driver's cache.
+     */
+    class Handle implements AutoCloseable {
+        private final PreparedStatement statement;
+        private final boolean binaryUuids;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final Cleaner.Cleanable cleanable;
+        private ResultSet resultSet;
+
+        private Handle(PreparedStatement statement, boolean binaryUuids) {
+            this.statement = statement;
+            this.binaryUuids = binaryUuids;
+            openHandles.increment();
+            // the cleanup action must not reference this handle, or it would never become unreachable
+            AtomicBoolean closed = this.closed;
+            LongAdder open = openHandles;
+            LongAdder leaked = leakedHandles;
+            this.cleanable = CLEANER.register(this, () -> {
+                open.decrement();
+                if (!closed.get()) leaked.increment();
+            });
+        }
+
+        /**
+         * @return the statement, for binding parameters
+         */
+        PreparedStatement statement() {
+            return statement;
+        }
+
+        /**
+         * Binds a player lookup key, as 16 bytes if the statement was prepared for {@code uuid_bin}
+         *
+         * @param index the parameter index
+         * @param uuid  the player
+         * @throws SQLException if the parameter could not be bound
+         */
+        void bindUuid(int index, UUID uuid) throws SQLException {
+            if (binaryUuids) {
+                statement.setBytes(index, UuidMigration.toBytes(uuid));
+            } else {
+                statement.setString(index, uuid.toString());
+            }
+        }
+
+        /**
+         * Binds the key of an inserted player row, the 16 bytes followed by the string if the statement was prepared
+         * for {@code uuid_bin}, the string alone otherwise
+         *
+         * @param index the index of the first key parameter
+         * @param uuid  the player
+         * @return the index of the parameter after the key
+         * @throws SQLException if a parameter could not be bound
+         */
+        int bindKey(int index, UUID uuid) throws SQLException {
+            if (binaryUuids) {
+                statement.setBytes(index++, UuidMigration.toBytes(uuid));
+            }
+            statement.setString(index++, uuid.toString());
+            return index;
+        }
+
+        /**
+         * Runs the query. The result set is closed together with the handle.
+         *
+         * @return the result set
+         * @throws SQLException if the query failed
+         */
+        ResultSet executeQuery() throws SQLException {
+            resultSet = statement.executeQuery();
+            return resultSet;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (!closed.compareAndSet(false, true)) return;
+            try {
+                if (resultSet != null) resultSet.close();
+            } finally {
+                statement.close();
+                cleanable.clean();
+            }
+        }
+    }
+}
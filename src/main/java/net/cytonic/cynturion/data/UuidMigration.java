@@ -0,0 +1,181 @@
+package net.cytonic.cynturion.data;
+
+import net.cytonic.cynturion.CynturionSettings;
+import org.slf4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Re-keys {@code cytonic_ranks} and {@code cytonic_bans} by a stored {@code uuid_bin BINARY(16)} primary key, so
+ * players are looked up in the clustered index by a 16 byte key instead of a 36 character string. Each table goes
+ * through these steps, every one of which is skipped if it is already done, so an interrupted migration resumes where
+ * it stopped:
+ * <ol>
+ *     <li>A nullable {@code uuid_bin} column is added instantly.</li>
+ *     <li>Insert and update triggers fill it from {@code uuid}. Other services only write the string form, so the
+ *     triggers stay for good.</li>
+ *     <li>Existing rows are backfilled in primary key order, {@link CynturionSettings#DATABASE_UUID_BACKFILL_CHUNK}
+ *     rows per transaction, so no lock is held for long.</li>
+ *     <li>The primary key is moved to {@code uuid_bin} online, and {@code uuid} keeps a unique index so writes keyed on
+ *     the string still find their row.</li>
+ * </ol>
+ * Every proxy runs this on startup, so it holds a named lock while migrating. Tables that aren't keyed by
+ * {@code uuid} alone are left as they are, and the proxy keeps using string uuids.
+ */
+public class UuidMigration {
+
+    private static final List<String> TABLES = List.of("cytonic_ranks", "cytonic_bans");
+    private static final String LOCK = "cynturion_uuid_migration";
+    private static final int LOCK_TIMEOUT = 300;
+    private static final String BINARY_UUID = "UNHEX(REPLACE(uuid, '-', ''))";
+
+    private final CytonicDatabase database;
+    private final Logger logger;
+    private final int chunkSize;
+
+    UuidMigration(CytonicDatabase database, Logger logger) {
+        this.database = database;
+        this.logger = logger;
+        this.chunkSize = CynturionSettings.DATABASE_UUID_BACKFILL_CHUNK;
+    }
+
+    /**
+     * Migrates every table that isn't keyed by binary uuid yet
+     *
+     * @return if every table can now be queried by binary uuid
+     */
+    boolean migrate() {
+        try (Connection connection = database.borrow()) {
+            if (!lock(connection)) {
+                logger.error("Timed out waiting for another proxy to migrate to binary uuids, falling back to string uuids!");
+                return false;
+            }
+            try {
+                for (String table : TABLES) {
+                    if (!migrate(connection, table)) return false;
+                }
+                return true;
+            } finally {
+                unlock(connection);
+            }
+        } catch (SQLException e) {
+            logger.error("An error occurred whilst migrating to binary uuids, falling back to string uuids!", e);
+            return false;
+        }
+    }
+
+    private boolean migrate(Connection connection, String table) throws SQLException {
+        List<String> primaryKey = primaryKey(connection, table);
+        if (primaryKey.equals(List.of("uuid_bin"))) return true;
+        if (!primaryKey.equals(List.of("uuid"))) {
+            logger.error("{} is keyed by {} rather than uuid, falling back to string uuids!", table, primaryKey);
+            return false;
+        }
+        logger.info("Migrating {} to binary uuid keys", table);
+        long start = System.nanoTime();
+        try (Statement statement = connection.createStatement()) {
+            if (!columnExists(connection, table)) {
+                statement.executeUpdate(STR."ALTER TABLE \{table} ADD COLUMN uuid_bin BINARY(16) NULL, ALGORITHM=INSTANT");
+            }
+            for (String event : List.of("INSERT", "UPDATE")) {
+                String trigger = STR."\{table}_uuid_bin_\{event.toLowerCase()}";
+                if (triggerExists(connection, trigger)) continue;
+                statement.executeUpdate(STR."CREATE TRIGGER \{trigger} BEFORE \{event} ON \{table} FOR EACH ROW SET NEW.uuid_bin = UNHEX(REPLACE(NEW.uuid, '-', ''))");
+            }
+        }
+        long rows = backfill(connection, table);
+        logger.info("Backfilled {} binary uuids of {} in {}ms", rows, table, (System.nanoTime() - start) / 1_000_000);
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(STR."ALTER TABLE \{table} MODIFY uuid_bin BINARY(16) NOT NULL, DROP PRIMARY KEY, " +
+                    STR."ADD PRIMARY KEY (uuid_bin), ADD UNIQUE INDEX uq_\{table}_uuid (uuid), ALGORITHM=INPLACE, LOCK=NONE");
+        }
+        logger.info("Keyed {} by binary uuid in {}ms", table, (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    /**
+     * Fills {@code uuid_bin} for every row written before the triggers existed, one primary key range at a time
+     *
+     * @return how many rows were filled
+     */
+    private long backfill(Connection connection, String table) throws SQLException {
+        long rows = 0;
+        String last = "";
+        try (PreparedStatement next = connection.prepareStatement(STR."SELECT MAX(uuid) FROM (SELECT uuid FROM \{table} WHERE uuid > ? ORDER BY uuid LIMIT ?) AS chunk");
+             PreparedStatement fill = connection.prepareStatement(STR."UPDATE \{table} SET uuid_bin = \{BINARY_UUID} WHERE uuid > ? AND uuid <= ? AND uuid_bin IS NULL")) {
+            while (true) {
+                next.setString(1, last);
+                next.setInt(2, chunkSize);
+                String upper;
+                try (ResultSet rs = next.executeQuery()) {
+                    upper = rs.next() ? rs.getString(1) : null;
+                }
+                if (upper == null) return rows;
+                fill.setString(1, last);
+                fill.setString(2, upper);
+                rows += fill.executeUpdate();
+                last = upper;
+            }
+        }
+    }
+
+    private List<String> primaryKey(Connection connection, String table) throws SQLException {
+        try (StatementRegistry.Handle handle = database.prepare(connection, StatementRegistry.Query.PRIMARY_KEY_COLUMNS)) {
+            handle.statement().setString(1, table);
+            ResultSet rs = handle.executeQuery();
+            List<String> columns = new ArrayList<>();
+            while (rs.next()) {
+                columns.add(rs.getString(1));
+            }
+            return columns;
+        }
+    }
+
+    private boolean columnExists(Connection connection, String table) throws SQLException {
+        try (StatementRegistry.Handle handle = database.prepare(connection, StatementRegistry.Query.COLUMN_EXISTS)) {
+            handle.statement().setString(1, table);
+            handle.statement().setString(2, "uuid_bin");
+            ResultSet rs = handle.executeQuery();
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+
+    private boolean triggerExists(Connection connection, String trigger) throws SQLException {
+        try (StatementRegistry.Handle handle = database.prepare(connection, StatementRegistry.Query.TRIGGER_EXISTS)) {
+            handle.statement().setString(1, trigger);
+            ResultSet rs = handle.executeQuery();
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+
+    private boolean lock(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, LOCK);
+            ps.setInt(2, LOCK_TIMEOUT);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private void unlock(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK);
+            ps.executeQuery().close();
+        }
+    }
+
+    /**
+     * Converts a uuid to the 16 big-endian bytes stored in {@code uuid_bin}
+     *
+     * @param uuid the uuid to convert
+     * @return the binary form of the uuid
+     */
+    static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+    }
+}
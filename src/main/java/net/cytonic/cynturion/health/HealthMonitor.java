@@ -0,0 +1,155 @@
+package net.cytonic.cynturion.health;
+
+import com.velocitypowered.api.proxy.server.PingOptions;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import net.cytonic.cynturion.Cynturion;
+import net.cytonic.cynturion.CynturionSettings;
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pings every registered server in the background and keeps the latest result of each, so connecting players never
+ * wait on a ping. Every result is passed on to the {@link net.cytonic.cynturion.ServerGroupingManager}, which leaves
+ * servers that are down out of its fallback tiers. At most {@link CynturionSettings#HEALTH_CHECK_CONCURRENCY} pings are in flight at once, each one
+ * starting the next when it completes, so the scheduler thread never waits on a ping, and a round is skipped while the
+ * previous one is still waiting on pings. A server that fails a check stops receiving players
+ * right away, and gets them again as soon as a check succeeds. It is only unregistered after
+ * {@link CynturionSettings#HEALTH_CHECK_FAILURES} failed checks in a row, so a single dropped ping doesn't remove it.
+ */
+public class HealthMonitor {
+
+    private final Cynturion plugin;
+    private final Logger logger;
+    private final Map<String, Health> health = new ConcurrentHashMap<>();
+    // set while a round is still waiting on pings
+    private final AtomicBoolean checking = new AtomicBoolean();
+    private final PingOptions options = PingOptions.builder().timeout(Duration.ofMillis(CynturionSettings.HEALTH_CHECK_TIMEOUT)).build();
+
+    public HealthMonitor(Cynturion plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+    }
+
+    /**
+     * Starts checking every {@link CynturionSettings#HEALTH_CHECK_INTERVAL} milliseconds
+     */
+    public void start() {
+        plugin.getProxy().getScheduler().buildTask(plugin, this::checkAll)
+                .repeat(CynturionSettings.HEALTH_CHECK_INTERVAL, TimeUnit.MILLISECONDS).schedule();
+    }
+
+    /**
+     * @param server the server name
+     * @return whether players may be sent to the server. Servers that haven't been checked yet are assumed to be up.
+     */
+    public boolean isAvailable(String server) {
+        Health current = health.get(server);
+        return current == null || current.online();
+    }
+
+    /**
+     * @return the latest health of every checked server, by name
+     */
+    public Map<String, Health> getHealth() {
+        return Map.copyOf(health);
+    }
+
+    private void checkAll() {
+        if (!checking.compareAndSet(false, true)) return;
+        Collection<RegisteredServer> servers = plugin.getProxy().getAllServers();
+        // forget servers that were unregistered some other way, e.g. by a stop message
+        Set<String> registered = new HashSet<>();
+        servers.forEach(server -> registered.add(server.getServerInfo().getName()));
+        health.keySet().retainAll(registered);
+        if (servers.isEmpty()) {
+            checking.set(false);
+            return;
+        }
+        Queue<RegisteredServer> pending = new ConcurrentLinkedQueue<>(servers);
+        // the round ends when the last ping is done
+        AtomicInteger remaining = new AtomicInteger(servers.size());
+        for (int i = 0; i < Math.min(CynturionSettings.HEALTH_CHECK_CONCURRENCY, servers.size()); i++) {
+            pingNext(pending, remaining);
+        }
+    }
+
+    // every finished ping starts the next one, so no thread ever waits for a ping to free up a slot
+    private void pingNext(Queue<RegisteredServer> pending, AtomicInteger remaining) {
+        RegisteredServer server = pending.poll();
+        if (server == null) return;
+        long start = System.nanoTime();
+        server.ping(options).whenComplete((ping, throwable) -> {
+            try {
+                if (throwable != null || ping == null) {
+                    onFailure(server.getServerInfo());
+                } else {
+                    onSuccess(server.getServerInfo().getName(), ping, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+            } finally {
+                if (remaining.decrementAndGet() == 0) {
+                    checking.set(false);
+                } else {
+                    pingNext(pending, remaining);
+                }
+            }
+        });
+    }
+
+    private void onSuccess(String name, ServerPing ping, long rtt) {
+        int players = ping.getPlayers().map(ServerPing.Players::getOnline).orElse(0);
+        int max = ping.getPlayers().map(ServerPing.Players::getMax).orElse(0);
+        health.put(name, new Health(true, rtt, players, 0));
+        plugin.getServerGroupingManager().setAvailable(name, true);
+        if (max > 0) plugin.getServerLoads().setCapacity(name, max);
+    }
+
+    // runs on the thread that completed the ping, so the unregistering is handed off
+    private void onFailure(ServerInfo info) {
+        Health updated = health.compute(info.getName(), (name, current) -> {
+            int failures = current == null ? 1 : current.failures() + 1;
+            return new Health(false, current == null ? -1 : current.rttMillis(), current == null ? 0 : current.players(), failures);
+        });
+        plugin.getServerGroupingManager().setAvailable(info.getName(), false);
+        if (updated.failures() == 1) logger.warn("Server {} failed a health check, sending players elsewhere", info.getName());
+        if (updated.failures() != CynturionSettings.HEALTH_CHECK_FAILURES) return;
+        plugin.getProxy().getScheduler().buildTask(plugin, () -> unregister(info)).schedule();
+    }
+
+    private void unregister(ServerInfo info) {
+        logger.warn("Server {} failed {} health checks in a row, unregistering it", info.getName(), CynturionSettings.HEALTH_CHECK_FAILURES);
+        try {
+            plugin.getServerGroupingManager().removeServer(info.getName(), null);
+            plugin.getProxy().unregisterServer(info);
+            plugin.getRedis().removeServer(info);
+            plugin.getRedis().sendUnregisterServerMessage(info);
+        } catch (Exception e) {
+            logger.error("An error occurred whilst unregistering server {}!", info.getName(), e);
+        } finally {
+            health.remove(info.getName());
+        }
+    }
+
+    /**
+     * The latest health check result of a server
+     *
+     * @param online    whether players may be sent to it
+     * @param rttMillis the round trip time of the last successful ping
+     * @param players   the players it reported
+     * @param failures  the failed checks in a row
+     */
+    public record Health(boolean online, long rttMillis, int players, int failures) {
+    }
+}
@@ -0,0 +1,172 @@
+package net.cytonic.cynturion.messaging;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compact, versioned wire format for messages between proxies. A message is a {@code 0xFF} marker, the format
+ * version, a message type and the fields, with uuids written as 16 raw bytes and strings as length-prefixed UTF-8.
+ * Messages are published and received as raw bytes, so a uuid plus a server id fits in about 30 bytes, and encoding a
+ * message allocates the message and its encoded strings only. The marker is never valid UTF-8, so it can't start any of
+ * the text formats, and receivers tell the two apart with {@link #isBinary}.
+ * <p>
+ * Strings read from messages, such as server ids, are interned, so the handful of distinct ids seen on the network
+ * aren't kept around once per message.
+ */
+public final class BinaryCodec {
+
+    /**
+     * The newest format version this proxy can read and write
+     */
+    public static final int VERSION = 1;
+    /**
+     * A player's cached ban status should be dropped: uuid
+     */
+    public static final byte BAN_INVALIDATION = 1;
+    /**
+     * A player's rank changed: uuid, rank name
+     */
+    public static final byte RANK_CHANGE = 2;
+    /**
+     * A player should be sent to a server: uuid, server id
+     */
+    public static final byte PLAYER_SEND = 3;
+
+    private static final byte MAGIC = (byte) 0xFF;
+    private static final int HEADER = 3;
+    // bounded, strings past this many distinct values are returned without interning
+    private static final int MAX_INTERNED = 4096;
+    private static final Map<String, String> INTERNED = new ConcurrentHashMap<>();
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * @param message a received message
+     * @return whether the message is in this format rather than one of the text formats
+     */
+    public static boolean isBinary(byte[] message) {
+        return message.length > 0 && message[0] == MAGIC;
+    }
+
+    public static byte[] encodeBanInvalidation(UUID uuid) {
+        return new Writer(BAN_INVALIDATION, 16).uuid(uuid).toBytes();
+    }
+
+    public static byte[] encodeRankChange(UUID uuid, String rank) {
+        byte[] name = rank.getBytes(StandardCharsets.UTF_8);
+        return new Writer(RANK_CHANGE, 16 + 2 + name.length).uuid(uuid).string(name).toBytes();
+    }
+
+    public static byte[] encodePlayerSend(UUID uuid, String serverId) {
+        byte[] server = serverId.getBytes(StandardCharsets.UTF_8);
+        return new Writer(PLAYER_SEND, 16 + 2 + server.length).uuid(uuid).string(server).toBytes();
+    }
+
+    /**
+     * Opens a message for reading
+     *
+     * @param message the message, which must be {@link #isBinary binary}
+     * @param type    the expected message type
+     * @return a reader positioned at the first field
+     * @throws IllegalArgumentException if the message is of another type or a newer version
+     */
+    public static Reader read(byte[] message, byte type) {
+        if (!isBinary(message) || message.length < HEADER) throw new IllegalArgumentException("Not a binary message");
+        int version = message[1] & 0xFF;
+        if (version > VERSION) throw new IllegalArgumentException(STR."Unsupported message version \{version}");
+        if (message[2] != type) throw new IllegalArgumentException(STR."Expected message type \{type} but got \{message[2]}");
+        return new Reader(message);
+    }
+
+    /**
+     * Reads the player uuid every message type starts with, without checking the type
+     *
+     * @param message the message, which must be {@link #isBinary binary}
+     * @return the uuid
+     */
+    public static UUID leadingUuid(byte[] message) {
+        if (!isBinary(message) || message.length < HEADER + 16) throw new IllegalArgumentException("Not a binary message");
+        return new Reader(message).uuid();
+    }
+
+    private static final class Writer {
+        private final byte[] buffer;
+        private int position;
+
+        private Writer(byte type, int size) {
+            buffer = new byte[HEADER + size];
+            buffer[0] = MAGIC;
+            buffer[1] = VERSION;
+            buffer[2] = type;
+            position = HEADER;
+        }
+
+        private Writer uuid(UUID uuid) {
+            writeLong(uuid.getMostSignificantBits());
+            writeLong(uuid.getLeastSignificantBits());
+            return this;
+        }
+
+        // strings are ids and enum names, always shorter than 65536 bytes
+        private Writer string(byte[] value) {
+            buffer[position++] = (byte) (value.length >>> 8);
+            buffer[position++] = (byte) value.length;
+            System.arraycopy(value, 0, buffer, position, value.length);
+            position += value.length;
+            return this;
+        }
+
+        private void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        // sized exactly up front, so the buffer is the message
+        private byte[] toBytes() {
+            return buffer;
+        }
+    }
+
+    /**
+     * Reads the fields of a message in the order they were written
+     */
+    public static final class Reader {
+        private final byte[] message;
+        private int position = HEADER;
+
+        private Reader(byte[] message) {
+            this.message = message;
+        }
+
+        public UUID uuid() {
+            return new UUID(readLong(), readLong());
+        }
+
+        public String string() {
+            if (position + 2 > message.length) throw new IllegalArgumentException("Truncated binary message");
+            int length = ((message[position] & 0xFF) << 8) | (message[position + 1] & 0xFF);
+            position += 2;
+            if (position + length > message.length) throw new IllegalArgumentException("Truncated binary message");
+            String value = new String(message, position, length, StandardCharsets.UTF_8);
+            position += length;
+            String interned = INTERNED.get(value);
+            if (interned != null) return interned;
+            if (INTERNED.size() >= MAX_INTERNED) return value;
+            interned = INTERNED.putIfAbsent(value, value);
+            return interned == null ? value : interned;
+        }
+
+        private long readLong() {
+            if (position + 8 > message.length) throw new IllegalArgumentException("Truncated binary message");
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (message[position++] & 0xFF);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package net.cytonic.cynturion.messaging;
+
+import com.rabbitmq.client.*;
+import net.cytonic.cynturion.Cynturion;
+import net.cytonic.cynturion.CynturionSettings;
+import net.cytonic.cynturion.RedisDatabase;
+import net.cytonic.cynturion.messaging.pubsub.LocalPlayerFilter;
+import net.cytonic.cynturion.messaging.pubsub.MessageHandler;
+import net.cytonic.cynturion.messaging.pubsub.PlayerKick;
+import net.cytonic.cynturion.messaging.pubsub.PlayerSend;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Durable RabbitMQ queues for player send and kick commands. The other services publish commands to the
+ * {@link #EXCHANGE} topic exchange with the routing key {@code <target>.<type>}, where the target is either the id of
+ * the proxy the player is on or {@code any}:
+ * <ul>
+ *     <li>{@link #SHARED_QUEUE} is consumed by every proxy. The proxy that takes a command either handles it, if the
+ *     player is connected to it, or forwards it to the queue of the proxy the player is on.</li>
+ *     <li>Every proxy also has its own queue, bound to {@code <proxy id>.*}, for commands addressed to it directly.</li>
+ * </ul>
+ * Commands are acknowledged only after they were handled or forwarded. Each consumer channel has at most
+ * {@link CynturionSettings#RABBITMQ_PREFETCH} of them in flight. Commands that can't be handled, because they are
+ * malformed, the player isn't online anywhere or the handler failed, are dead-lettered to {@link #DEAD_LETTER_QUEUE}.
+ */
+public class RabbitCommandQueue {
+
+    /**
+     * The exchange commands are published to
+     */
+    public static final String EXCHANGE = "cytonic.proxy.commands";
+    /**
+     * The queue every proxy competes on
+     */
+    public static final String SHARED_QUEUE = "cytonic.proxy.commands";
+    /**
+     * Where commands that couldn't be handled end up
+     */
+    public static final String DEAD_LETTER_QUEUE = "cytonic.proxy.commands.dead";
+    /**
+     * Routing key suffix of send commands
+     */
+    public static final String SEND = "send";
+    /**
+     * Routing key suffix of kick commands
+     */
+    public static final String KICK = "kick";
+    private static final String DEAD_LETTER_EXCHANGE = "cytonic.proxy.commands.dlx";
+    private static final String SHARED_TARGET = "any";
+
+    private final Cynturion plugin;
+    private final Connection connection;
+    private final RabbitPublisher publisher;
+    private final Logger logger;
+    private final String proxyId;
+    private final String proxyQueue;
+    private final MessageHandler playerSend;
+    private final MessageHandler playerKick;
+    private final List<Channel> consumers = new ArrayList<>();
+
+    public RabbitCommandQueue(Cynturion plugin, Connection connection, RabbitPublisher publisher, String proxyId) {
+        this.plugin = plugin;
+        this.connection = connection;
+        this.publisher = publisher;
+        this.logger = plugin.getLogger();
+        this.proxyId = proxyId;
+        this.proxyQueue = STR."\{SHARED_QUEUE}.\{proxyId}";
+        this.playerSend = new PlayerSend(plugin);
+        this.playerKick = new PlayerKick(plugin);
+    }
+
+    /**
+     * Declares the exchanges and queues
+     *
+     * @param channel the channel to declare them on
+     * @throws IOException if a declaration failed
+     */
+    public void declare(Channel channel) throws IOException {
+        channel.exchangeDeclare(DEAD_LETTER_EXCHANGE, BuiltinExchangeType.FANOUT, true);
+        channel.queueDeclare(DEAD_LETTER_QUEUE, true, false, false, null);
+        channel.queueBind(DEAD_LETTER_QUEUE, DEAD_LETTER_EXCHANGE, "");
+        channel.exchangeDeclare(EXCHANGE, BuiltinExchangeType.TOPIC, true);
+        channel.queueDeclare(SHARED_QUEUE, true, false, false, Map.of("x-dead-letter-exchange", DEAD_LETTER_EXCHANGE));
+        channel.queueBind(SHARED_QUEUE, EXCHANGE, STR."\{SHARED_TARGET}.*");
+        // the queue of a proxy that is gone for good is deleted by the broker once it has been unused for a while
+        channel.queueDeclare(proxyQueue, true, false, false, Map.of("x-dead-letter-exchange", DEAD_LETTER_EXCHANGE,
+                "x-expires", CynturionSettings.RABBITMQ_PROXY_QUEUE_EXPIRY));
+        channel.queueBind(proxyQueue, EXCHANGE, STR."\{proxyId}.*");
+    }
+
+    /**
+     * Starts {@link CynturionSettings#RABBITMQ_CONSUMERS} consumer channels on the shared queue and this proxy's queue
+     *
+     * @throws IOException if a consumer couldn't be started
+     */
+    public void start() throws IOException {
+        for (int i = 0; i < CynturionSettings.RABBITMQ_CONSUMERS; i++) {
+            Channel channel = connection.createChannel();
+            channel.basicQos(CynturionSettings.RABBITMQ_PREFETCH);
+            DeliverCallback callback = (tag, delivery) -> handle(channel, delivery);
+            channel.basicConsume(SHARED_QUEUE, false, callback, tag -> {
+            });
+            channel.basicConsume(proxyQueue, false, callback, tag -> {
+            });
+            consumers.add(channel);
+        }
+    }
+
+    /**
+     * Stops consuming. Commands that were taken but not acknowledged go back to their queue.
+     */
+    public void stop() {
+        for (Channel channel : consumers) {
+            try {
+                if (channel.isOpen()) channel.close();
+            } catch (Exception e) {
+                logger.debug("Failed to close a command consumer", e);
+            }
+        }
+        consumers.clear();
+    }
+
+    private void handle(Channel channel, Delivery delivery) throws IOException {
+        long tag = delivery.getEnvelope().getDeliveryTag();
+        String routingKey = delivery.getEnvelope().getRoutingKey();
+        String type = routingKey.substring(routingKey.lastIndexOf('.') + 1);
+        byte[] body = delivery.getBody();
+        MessageHandler handler = switch (type) {
+            case SEND -> playerSend;
+            case KICK -> playerKick;
+            default -> null;
+        };
+        Optional<UUID> player = LocalPlayerFilter.playerOf(body);
+        if (handler == null || player.isEmpty()) {
+            logger.warn("Dead-lettering a malformed {} command", routingKey);
+            channel.basicNack(tag, false, false);
+            return;
+        }
+        if (plugin.getProxy().getPlayer(player.get()).isPresent()) {
+            try {
+                // addressed to this proxy's channel, so the broadcast filter doesn't check the player again
+                String target = RedisDatabase.proxyChannel(type.equals(SEND) ? RedisDatabase.PLAYER_SEND_CHANNEL : RedisDatabase.PLAYER_KICK, proxyId);
+                if (BinaryCodec.isBinary(body)) {
+                    handler.onMessage(target, body);
+                } else {
+                    handler.onMessage(target, new String(body, StandardCharsets.UTF_8));
+                }
+                channel.basicAck(tag, false);
+            } catch (Exception e) {
+                logger.error("Failed to handle the {} command for {}", type, player.get(), e);
+                channel.basicNack(tag, false, false);
+            }
+            return;
+        }
+        Optional<String> owner = plugin.getRedis().getPlayerProxy(player.get());
+        if (owner.isEmpty() || owner.get().equals(proxyId)) {
+            logger.warn("Dead-lettering the {} command for {}, who isn't online", type, player.get());
+            channel.basicNack(tag, false, false);
+            return;
+        }
+        // acknowledged once the owner's queue has it, so a crash in between redelivers rather than loses it
+        publisher.publish(EXCHANGE, STR."\{owner.get()}.\{type}", body).whenComplete((ignored, throwable) -> {
+            try {
+                if (throwable == null) {
+                    channel.basicAck(tag, false);
+                } else {
+                    channel.basicNack(tag, false, true);
+                }
+            } catch (IOException | AlreadyClosedException e) {
+                logger.debug("Failed to settle a forwarded command", e);
+            }
+        });
+    }
+}
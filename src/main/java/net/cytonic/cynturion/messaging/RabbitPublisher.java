@@ -0,0 +1,252 @@
+package net.cytonic.cynturion.messaging;
+
+import com.rabbitmq.client.*;
+import net.cytonic.cynturion.CynturionSettings;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes to RabbitMQ without blocking the caller. Messages are spread over
+ * {@link CynturionSettings#RABBITMQ_PUBLISH_CHANNELS} channels, each owned by one thread that sends whatever queued up
+ * within {@link CynturionSettings#RABBITMQ_PUBLISH_LINGER} milliseconds as a batch. Every channel runs in confirm
+ * mode, and the future of a message completes once the broker has confirmed it. Outstanding confirms are kept in a
+ * sorted map by delivery tag, so a confirm covering many messages completes all of them with one range operation.
+ * While the connection is down, each lane holds its batch until the client has recovered its channel.
+ */
+public class RabbitPublisher {
+
+    private final Connection connection;
+    private final Logger logger;
+    private final Lane[] lanes;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile boolean running = true;
+
+    /**
+     * @param connection the connection to open the channels on
+     * @param logger     the logger
+     */
+    public RabbitPublisher(Connection connection, Logger logger) {
+        this.connection = connection;
+        this.logger = logger;
+        this.lanes = new Lane[CynturionSettings.RABBITMQ_PUBLISH_CHANNELS];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i);
+        }
+    }
+
+    /**
+     * Queues a persistent message for publishing
+     *
+     * @param exchange   the exchange
+     * @param routingKey the routing key
+     * @param body       the message
+     * @return a future that completes once the broker confirmed the message, or exceptionally if it was rejected
+     */
+    public CompletableFuture<Void> publish(String exchange, String routingKey, String body) {
+        return publish(exchange, routingKey, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Queues a persistent message for publishing
+     *
+     * @param exchange   the exchange
+     * @param routingKey the routing key
+     * @param body       the message, as it should be delivered
+     * @return a future that completes once the broker confirmed the message, or exceptionally if it was rejected
+     */
+    public CompletableFuture<Void> publish(String exchange, String routingKey, byte[] body) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new RejectedExecutionException("The publisher is shut down"));
+            return future;
+        }
+        Lane lane = lanes[Math.floorMod(next.getAndIncrement(), lanes.length)];
+        if (!lane.queue.offer(new Pending(exchange, routingKey, body, future))) {
+            future.completeExceptionally(new RejectedExecutionException("The publish queue is full"));
+        }
+        return future;
+    }
+
+    /**
+     * @return the number of messages waiting to be published
+     */
+    public int getQueuedCount() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            queued += lane.queue.size();
+        }
+        return queued;
+    }
+
+    /**
+     * @return the number of published messages the broker hasn't confirmed yet
+     */
+    public int getUnconfirmedCount() {
+        int unconfirmed = 0;
+        for (Lane lane : lanes) {
+            unconfirmed += lane.outstanding.size();
+        }
+        return unconfirmed;
+    }
+
+    /**
+     * Publishes what is already queued and waits for the confirms
+     *
+     * @param timeout the maximum number of milliseconds to wait
+     */
+    public void close(long timeout) {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        for (Lane lane : lanes) {
+            try {
+                lane.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+                Channel channel = lane.channel;
+                if (channel != null && channel.isOpen()) {
+                    channel.waitForConfirms(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (TimeoutException | IOException | IllegalStateException e) {
+                logger.warn("Timed out waiting for {} RabbitMQ confirms", lane.outstanding.size());
+            }
+        }
+    }
+
+    private final class Lane {
+        private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(CynturionSettings.RABBITMQ_PUBLISH_QUEUE_CAPACITY);
+        // delivery tag -> future, completed as the broker confirms
+        private final ConcurrentNavigableMap<Long, CompletableFuture<Void>> outstanding = new ConcurrentSkipListMap<>();
+        private final Thread thread;
+        // notified whenever the channel was recovered
+        private final Object recovery = new Object();
+        private volatile Channel channel;
+
+        private Lane(int index) {
+            this.thread = Thread.ofPlatform().name(STR."cynturion-rabbitmq-publisher-\{index}").daemon().start(this::run);
+        }
+
+        private void run() {
+            List<Pending> batch = new ArrayList<>(CynturionSettings.RABBITMQ_PUBLISH_BATCH);
+            while (running || !queue.isEmpty()) {
+                try {
+                    Pending first = queue.poll(CynturionSettings.RABBITMQ_PUBLISH_LINGER, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    batch.add(first);
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CynturionSettings.RABBITMQ_PUBLISH_LINGER);
+                    while (batch.size() < CynturionSettings.RABBITMQ_PUBLISH_BATCH) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) break;
+                        Pending pending = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (pending == null) break;
+                        batch.add(pending);
+                    }
+                } catch (InterruptedException e) {
+                    queue.drainTo(batch, CynturionSettings.RABBITMQ_PUBLISH_BATCH - batch.size());
+                }
+                if (!batch.isEmpty()) {
+                    send(batch);
+                    batch.clear();
+                }
+            }
+        }
+
+        private void send(List<Pending> batch) {
+            Channel channel;
+            try {
+                channel = channel();
+            } catch (IOException e) {
+                logger.error("Failed to open a RabbitMQ publisher channel!", e);
+                batch.forEach(pending -> pending.future().completeExceptionally(e));
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(pending -> pending.future().completeExceptionally(e));
+                return;
+            }
+            for (Pending pending : batch) {
+                long tag = channel.getNextPublishSeqNo();
+                outstanding.put(tag, pending.future());
+                try {
+                    channel.basicPublish(pending.exchange(), pending.routingKey(), MessageProperties.PERSISTENT_TEXT_PLAIN, pending.body());
+                } catch (IOException | AlreadyClosedException e) {
+                    outstanding.remove(tag);
+                    pending.future().completeExceptionally(e);
+                }
+            }
+        }
+
+        private Channel channel() throws IOException, InterruptedException {
+            Channel current = channel;
+            if (current != null && current.isOpen()) return current;
+            if (current != null && recovers(current)) {
+                // reopened with its listeners once the connection is back, a replacement would leak it
+                synchronized (recovery) {
+                    while (!current.isOpen()) {
+                        if (!running) throw new IOException("The publisher shut down while its channel was recovering");
+                        recovery.wait(1000);
+                    }
+                }
+                return current;
+            }
+            Channel created = connection.createChannel();
+            created.confirmSelect();
+            created.addConfirmListener((tag, multiple) -> confirm(tag, multiple, null),
+                    (tag, multiple) -> confirm(tag, multiple, new IOException("The broker rejected the message")));
+            created.addShutdownListener(cause -> fail(cause));
+            if (created instanceof Recoverable recoverable) {
+                // delivery tags start over on a recovered channel, so anything outstanding can never be confirmed
+                recoverable.addRecoveryListener(new RecoveryListener() {
+                    @Override
+                    public void handleRecovery(Recoverable recoverable) {
+                        fail(new IOException("The channel was recovered before the message was confirmed"));
+                        synchronized (recovery) {
+                            recovery.notifyAll();
+                        }
+                    }
+
+                    @Override
+                    public void handleRecoveryStarted(Recoverable recoverable) {
+                    }
+                });
+            }
+            channel = created;
+            return created;
+        }
+
+        // the client only recovers channels that went down with their connection, not ones the broker or we closed
+        private boolean recovers(Channel channel) {
+            ShutdownSignalException cause = channel.getCloseReason();
+            return channel instanceof Recoverable && connection instanceof Recoverable
+                    && cause != null && cause.isHardError() && !cause.isInitiatedByApplication();
+        }
+
+        private void confirm(long tag, boolean multiple, Exception failure) {
+            Map<Long, CompletableFuture<Void>> confirmed = multiple ? outstanding.headMap(tag, true) : outstanding.subMap(tag, true, tag, true);
+            confirmed.values().forEach(future -> {
+                if (failure == null) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(failure);
+                }
+            });
+            confirmed.clear();
+        }
+
+        private void fail(Exception cause) {
+            Map<Long, CompletableFuture<Void>> failed = outstanding.headMap(Long.MAX_VALUE, true);
+            failed.values().forEach(future -> future.completeExceptionally(cause));
+            failed.clear();
+        }
+    }
+
+    private record Pending(String exchange, String routingKey, byte[] body, CompletableFuture<Void> future) {
+    }
+}
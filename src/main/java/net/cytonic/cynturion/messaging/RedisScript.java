@@ -0,0 +1,45 @@
+package net.cytonic.cynturion.messaging;
+
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * A Lua script run atomically by Redis. It is invoked by its SHA-1 so the body is only sent again if the server has
+ * lost its script cache, e.g. after a restart.
+ */
+public class RedisScript {
+
+    private final String source;
+    private final String sha;
+
+    public RedisScript(String source) {
+        this.source = source;
+        try {
+            this.sha = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Runs the script in a single round trip
+     *
+     * @param jedis the client to run the script on
+     * @param keys  the keys the script touches
+     * @param args  the script arguments
+     * @return the script's return value
+     */
+    public Object run(UnifiedJedis jedis, List<String> keys, List<String> args) {
+        try {
+            return jedis.evalsha(sha, keys, args);
+        } catch (JedisNoScriptException e) {
+            return jedis.eval(source, keys, args);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package net.cytonic.cynturion.messaging;
+
+import net.cytonic.cynturion.CynturionSettings;
+import net.cytonic.cynturion.messaging.pubsub.LocalPlayerFilter;
+import net.cytonic.cynturion.messaging.pubsub.MessageHandler;
+import org.slf4j.Logger;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.params.XAddParams;
+import redis.clients.jedis.params.XReadGroupParams;
+import redis.clients.jedis.resps.StreamConsumerInfo;
+import redis.clients.jedis.resps.StreamEntry;
+import redis.clients.jedis.resps.StreamGroupInfo;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carries channel messages over capped Redis Streams instead of pub/sub, so nothing published while the proxy is
+ * restarting or reconnecting is lost. Every proxy reads through its own consumer group, named after
+ * {@link CynturionSettings#PROXY_ID}, so each one sees every entry. The group remembers the last entry it was handed, and
+ * entries are acknowledged only after their handler ran, so after a restart the proxy first replays whatever it had
+ * read but not acknowledged and then carries on from where the group left off. That only works if the proxy comes back
+ * under the same id, and the groups of proxies that never come back are destroyed by {@link #pruneGroups()}.
+ * <p>
+ * Entries are handled on a {@link StripedExecutor}, keyed by the player they are about, and each one is acknowledged
+ * by its task once the handler returned. An entry whose handler threw stays pending and is replayed after the next
+ * restart or reconnect. When a handler queue is full the reader waits for room, so nothing is dropped while the unread
+ * entries wait in Redis.
+ */
+public class StreamTransport {
+
+    private static final String FIELD = "message";
+    private static final StreamEntryID PENDING = new StreamEntryID();
+
+    private final UnifiedJedis jedis;
+    private final Logger logger;
+    private final String group;
+    private final StripedExecutor executor;
+    private final Map<String, MessageHandler> handlers = new ConcurrentHashMap<>();
+    // entries queued on the executor but not acknowledged yet, so a replay doesn't hand them out twice
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param jedis  the client to read and write the streams with
+     * @param logger the logger
+     * @param group    the consumer group of this proxy
+     * @param executor runs the handlers and acknowledges their entries
+     */
+    public StreamTransport(UnifiedJedis jedis, Logger logger, String group, StripedExecutor executor) {
+        this.jedis = jedis;
+        this.logger = logger;
+        this.group = group;
+        this.executor = executor;
+    }
+
+    /**
+     * @param channel the channel
+     * @return the key of the stream carrying the channel's messages
+     */
+    public static String streamKey(String channel) {
+        return channel + "_stream";
+    }
+
+    /**
+     * Routes the entries of a channel's stream to a handler. Must be called before {@link #start()}.
+     *
+     * @param channel the channel
+     * @param handler the handler of the channel's messages
+     */
+    public void register(String channel, MessageHandler handler) {
+        handlers.put(channel, handler);
+    }
+
+    /**
+     * Appends a message to a channel's stream, trimming it to roughly {@link CynturionSettings#REDIS_STREAM_MAX_LENGTH}
+     * entries
+     *
+     * @param channel the channel
+     * @param message the message
+     */
+    public void publish(String channel, String message) {
+        jedis.xadd(streamKey(channel), XAddParams.xAddParams().maxLen(CynturionSettings.REDIS_STREAM_MAX_LENGTH).approximateTrimming(), Map.of(FIELD, message));
+    }
+
+    /**
+     * Creates the consumer groups that don't exist yet and starts reading
+     */
+    public void start() {
+        createGroups();
+        running = true;
+        thread = Thread.ofPlatform().name("cynturion-redis-streams").daemon().start(this::run);
+    }
+
+    /**
+     * Destroys the consumer groups of other proxies that haven't read for {@link CynturionSettings#REDIS_STREAM_GROUP_IDLE}
+     * seconds, so groups of proxies that are gone for good don't pile up. Groups that never had a consumer are left
+     * alone, since their proxy may be about to start reading.
+     */
+    public void pruneGroups() {
+        long idle = TimeUnit.SECONDS.toMillis(CynturionSettings.REDIS_STREAM_GROUP_IDLE);
+        for (String channel : handlers.keySet()) {
+            String key = streamKey(channel);
+            try {
+                for (StreamGroupInfo info : jedis.xinfoGroups(key)) {
+                    if (info.getName().equals(group)) continue;
+                    List<StreamConsumerInfo> consumers = jedis.xinfoConsumers2(key, info.getName());
+                    if (consumers.isEmpty() || consumers.stream().anyMatch(consumer -> consumer.getIdle() < idle)) continue;
+                    jedis.xgroupDestroy(key, info.getName());
+                    logger.info("Destroyed the stale consumer group {} on {} with {} pending entries", info.getName(), key, info.getPending());
+                }
+            } catch (JedisException e) {
+                logger.warn("Failed to prune the consumer groups of {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops reading once the current batch is handled
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) thread.interrupt();
+    }
+
+    private void createGroups() {
+        for (String channel : handlers.keySet()) {
+            try {
+                jedis.xgroupCreate(streamKey(channel), group, StreamEntryID.XGROUP_LAST_ENTRY, true);
+                logger.info("Created the consumer group {} on {}", group, streamKey(channel));
+            } catch (JedisDataException e) {
+                // BUSYGROUP, the group already exists and keeps its position
+            }
+        }
+    }
+
+    private void run() {
+        // replay what was read but never acknowledged, then switch to new entries
+        Map<String, StreamEntryID> replay = replayCursors();
+        while (running) {
+            try {
+                if (replay.isEmpty()) {
+                    Map<String, StreamEntryID> streams = new HashMap<>();
+                    handlers.keySet().forEach(channel -> streams.put(streamKey(channel), StreamEntryID.XREADGROUP_UNDELIVERED_ENTRY));
+                    read(streams, true);
+                } else {
+                    // each pass picks up after the last pending entry it saw, so entries that keep failing don't stall it
+                    Map<String, StreamEntryID> last = read(replay, false);
+                    replay.keySet().retainAll(last.keySet());
+                    replay.putAll(last);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (JedisException e) {
+                if (!running) return;
+                logger.warn("Failed to read from the redis streams: {}", e.getMessage());
+                // NOGROUP, the stream or the group was deleted, e.g. by a flush
+                if (e.getMessage() != null && e.getMessage().startsWith("NOGROUP")) createGroups();
+                replay = replayCursors();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(CynturionSettings.REDIS_RECONNECT_INITIAL_BACKOFF);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private Map<String, StreamEntryID> replayCursors() {
+        Map<String, StreamEntryID> cursors = new HashMap<>();
+        handlers.keySet().forEach(channel -> cursors.put(streamKey(channel), PENDING));
+        return cursors;
+    }
+
+    /**
+     * Reads a batch and hands its entries to the executor. Entries still in flight from an earlier read are skipped.
+     *
+     * @param streams stream key -> the id to read after
+     * @param block   whether to wait for new entries
+     * @return stream key -> the id of the last entry read, for the streams that returned any
+     */
+    private Map<String, StreamEntryID> read(Map<String, StreamEntryID> streams, boolean block) throws InterruptedException {
+        XReadGroupParams params = XReadGroupParams.xReadGroupParams().count(CynturionSettings.REDIS_STREAM_BATCH);
+        // pending entries are returned immediately, only wait when reading new ones
+        if (block) params.block(1000);
+        List<Map.Entry<String, List<StreamEntry>>> result = jedis.xreadGroup(group, group, params, streams);
+        Map<String, StreamEntryID> last = new HashMap<>();
+        if (result == null) return last;
+        for (Map.Entry<String, List<StreamEntry>> stream : result) {
+            String key = stream.getKey();
+            String channel = key.substring(0, key.length() - "_stream".length());
+            MessageHandler handler = handlers.get(channel);
+            for (StreamEntry entry : stream.getValue()) {
+                StreamEntryID id = entry.getID();
+                last.put(key, id);
+                String message = entry.getFields().get(FIELD);
+                if (message == null) {
+                    jedis.xack(key, group, id);
+                    continue;
+                }
+                String tracked = STR."\{key}/\{id}";
+                if (!inFlight.add(tracked)) continue;
+                // entries about the same player are handled in order, the rest in order per channel
+                Object ordering = LocalPlayerFilter.playerOf(message).<Object>map(uuid -> uuid).orElse(channel);
+                if (!executor.executeWaiting(ordering, () -> handle(key, channel, handler, id, tracked, message))) {
+                    // shutting down, the entry stays pending for the next start
+                    inFlight.remove(tracked);
+                    return last;
+                }
+            }
+        }
+        return last;
+    }
+
+    private void handle(String key, String channel, MessageHandler handler, StreamEntryID id, String tracked, String message) {
+        try {
+            handler.onMessage(channel, message);
+            jedis.xack(key, group, id);
+        } catch (Exception e) {
+            logger.error("An error occurred whilst handling stream entry {} on {}, leaving it pending", id, key, e);
+        } finally {
+            inFlight.remove(tracked);
+        }
+    }
+}
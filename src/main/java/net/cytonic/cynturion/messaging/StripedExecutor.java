@@ -0,0 +1,156 @@
+package net.cytonic.cynturion.messaging;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs tasks on a fixed set of threads, each with its own bounded queue. Tasks with the same key always land on the
+ * same thread, so they run in the order they were submitted, while tasks with different keys run in parallel. When a
+ * queue is full, the {@link OverflowPolicy} decides whether the submitter waits for room or the task is dropped.
+ */
+public class StripedExecutor {
+
+    private final BlockingQueue<Runnable>[] queues;
+    private final Thread[] threads;
+    private final OverflowPolicy policy;
+    private final long offerTimeout;
+    private final Logger logger;
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * @param name         the prefix of the thread names
+     * @param stripes      the number of threads
+     * @param capacity     the queue capacity of each thread
+     * @param policy       what to do when a queue is full
+     * @param offerTimeout how long {@link OverflowPolicy#BLOCK} waits for room, in milliseconds
+     * @param logger       the logger
+     */
+    @SuppressWarnings("unchecked")
+    public StripedExecutor(String name, int stripes, int capacity, OverflowPolicy policy, long offerTimeout, Logger logger) {
+        this.queues = new BlockingQueue[stripes];
+        this.threads = new Thread[stripes];
+        this.policy = policy;
+        this.offerTimeout = offerTimeout;
+        this.logger = logger;
+        for (int i = 0; i < stripes; i++) {
+            BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(capacity);
+            queues[i] = queue;
+            threads[i] = Thread.ofPlatform().name(name + i).daemon().start(() -> run(queue));
+        }
+    }
+
+    /**
+     * Queues a task behind every earlier task with the same key
+     *
+     * @param key  the ordering key, e.g. a player's uuid
+     * @param task the task
+     * @return false if the task was dropped
+     */
+    public boolean execute(Object key, Runnable task) {
+        BlockingQueue<Runnable> queue = queueOf(key);
+        boolean queued = false;
+        if (running) {
+            try {
+                queued = policy == OverflowPolicy.BLOCK ? queue.offer(task, offerTimeout, TimeUnit.MILLISECONDS) : queue.offer(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!queued) {
+            dropped.increment();
+            logger.warn("Dropped a task for {}, its handler queue is full", key);
+        }
+        return queued;
+    }
+
+    /**
+     * Queues a task behind every earlier task with the same key, waiting for as long as its queue is full regardless of
+     * the {@link OverflowPolicy}. Only for callers that lose nothing by waiting, like the stream reader, whose unread
+     * entries stay in Redis.
+     *
+     * @param key  the ordering key, e.g. a player's uuid
+     * @param task the task
+     * @return false if the executor is shut down
+     * @throws InterruptedException if interrupted while waiting for room
+     */
+    public boolean executeWaiting(Object key, Runnable task) throws InterruptedException {
+        if (!running) return false;
+        queueOf(key).put(task);
+        return true;
+    }
+
+    /**
+     * Stops accepting tasks, the threads exit once their queues are drained
+     */
+    public void shutdown() {
+        running = false;
+    }
+
+    /**
+     * @return the number of tasks waiting across all threads
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (BlockingQueue<Runnable> queue : queues) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return the number of tasks waiting on the busiest thread
+     */
+    public int getMaxQueueDepth() {
+        int max = 0;
+        for (BlockingQueue<Runnable> queue : queues) {
+            max = Math.max(max, queue.size());
+        }
+        return max;
+    }
+
+    /**
+     * @return how many tasks were dropped because their queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private BlockingQueue<Runnable> queueOf(Object key) {
+        int hash = key.hashCode();
+        return queues[Math.floorMod(hash ^ (hash >>> 16), queues.length)];
+    }
+
+    private void run(BlockingQueue<Runnable> queue) {
+        while (running || !queue.isEmpty()) {
+            try {
+                Runnable task = queue.poll(1, TimeUnit.SECONDS);
+                if (task != null) task.run();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                logger.error("An error occurred whilst running a handler task!", e);
+            }
+        }
+    }
+
+    /**
+     * What happens to a task submitted to a full queue
+     */
+    public enum OverflowPolicy {
+        /**
+         * The submitter waits for room, up to the offer timeout, before the task is dropped. This pushes back on the
+         * subscriber instead of losing commands during short bursts, but every wait holds up all other channels, and
+         * Redis disconnects a subscriber that falls too far behind.
+         */
+        BLOCK,
+        /**
+         * The task is dropped right away, so the subscriber never waits
+         */
+        DROP
+    }
+}
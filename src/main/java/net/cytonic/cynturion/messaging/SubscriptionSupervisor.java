@@ -0,0 +1,143 @@
+package net.cytonic.cynturion.messaging;
+
+import net.cytonic.cynturion.CynturionSettings;
+import net.cytonic.cynturion.messaging.pubsub.PubSubRouter;
+import org.slf4j.Logger;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the {@link PubSubRouter} subscribed. When the subscription drops, it is retried with jittered exponential
+ * backoff between {@link CynturionSettings#REDIS_RECONNECT_INITIAL_BACKOFF} and
+ * {@link CynturionSettings#REDIS_RECONNECT_MAX_BACKOFF}, and once it is back the reconciliation task is run to catch up
+ * on whatever was published in the meantime.
+ */
+public class SubscriptionSupervisor {
+
+    private final UnifiedJedis jedis;
+    private final PubSubRouter router;
+    private final Logger logger;
+    private final Runnable reconcile;
+    private final AtomicBoolean connected = new AtomicBoolean();
+    private final LongAdder reconnects = new LongAdder();
+    private final AtomicLong disconnectedNanos = new AtomicLong();
+    // System.nanoTime() when the current outage started, 0 while connected
+    private volatile long disconnectedSince;
+    private volatile long backoff;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param jedis     the client to subscribe with
+     * @param router    the subscription to keep alive
+     * @param logger    the logger
+     * @param reconcile run after every reconnect, off the subscriber thread
+     */
+    public SubscriptionSupervisor(UnifiedJedis jedis, PubSubRouter router, Logger logger, Runnable reconcile) {
+        this.jedis = jedis;
+        this.router = router;
+        this.logger = logger;
+        this.reconcile = reconcile;
+        this.backoff = CynturionSettings.REDIS_RECONNECT_INITIAL_BACKOFF;
+        router.setSubscribeListener(this::onSubscribed);
+    }
+
+    /**
+     * Starts the subscriber thread
+     */
+    public void start() {
+        running = true;
+        thread = Thread.ofPlatform().name("cynturion-redis-subscriber").daemon().start(this::run);
+    }
+
+    /**
+     * Unsubscribes and stops retrying
+     */
+    public void stop() {
+        running = false;
+        try {
+            if (router.isSubscribed()) router.unsubscribe();
+        } catch (JedisException e) {
+            logger.debug("Failed to unsubscribe cleanly", e);
+        }
+        if (thread != null) thread.interrupt();
+    }
+
+    /**
+     * @return whether the subscription is currently live
+     */
+    public boolean isConnected() {
+        return connected.get();
+    }
+
+    /**
+     * @return how many times the subscription was re-established after dropping
+     */
+    public long getReconnectCount() {
+        return reconnects.sum();
+    }
+
+    /**
+     * @return the total time spent without a subscription, including the current outage, in milliseconds
+     */
+    public long getDisconnectedMillis() {
+        long total = disconnectedNanos.get();
+        long since = disconnectedSince;
+        if (since != 0) total += System.nanoTime() - since;
+        return TimeUnit.NANOSECONDS.toMillis(total);
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                // blocks for as long as the subscription is live
+                jedis.subscribe(router, router.getChannels());
+                if (!running) return;
+                logger.warn("The redis subscription ended unexpectedly");
+            } catch (JedisException e) {
+                if (!running) return;
+                logger.warn("Lost the redis subscription: {}", e.getMessage());
+            }
+            onDisconnected();
+            long ceiling = backoff;
+            long delay = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+            backoff = Math.min(ceiling * 2, CynturionSettings.REDIS_RECONNECT_MAX_BACKOFF);
+            logger.info("Resubscribing to redis in {}ms", delay);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void onDisconnected() {
+        connected.set(false);
+        if (disconnectedSince == 0) disconnectedSince = System.nanoTime();
+    }
+
+    // called on the subscriber thread for every channel confirmation
+    private void onSubscribed() {
+        if (!connected.compareAndSet(false, true)) return;
+        backoff = CynturionSettings.REDIS_RECONNECT_INITIAL_BACKOFF;
+        long since = disconnectedSince;
+        if (since == 0) return;
+        disconnectedNanos.addAndGet(System.nanoTime() - since);
+        disconnectedSince = 0;
+        reconnects.increment();
+        logger.info("Resubscribed to redis, reconciling state");
+        Thread.ofVirtual().name("cynturion-redis-reconcile").start(() -> {
+            try {
+                reconcile.run();
+            } catch (Exception e) {
+                logger.error("An error occurred whilst reconciling state after a redis reconnect!", e);
+            }
+        });
+    }
+}
@@ -0,0 +1,45 @@
+package net.cytonic.cynturion.messaging.pubsub;
+
+import net.cytonic.cynturion.Cynturion;
+import net.cytonic.cynturion.RedisDatabase;
+import net.cytonic.cynturion.messaging.BinaryCodec;
+
+import java.util.UUID;
+
+public class BanInvalidation implements MessageHandler {
+
+    private final Cynturion plugin;
+
+    public BanInvalidation(Cynturion plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void onMessage(String channel, String message) {
+        if (!channel.equals(RedisDatabase.BAN_INVALIDATION_CHANNEL)) return;
+        try {
+            invalidate(UUID.fromString(message));
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warn("Received a ban invalidation for an invalid uuid: {}", message);
+        }
+    }
+
+    @Override
+    public void onMessage(String channel, byte[] message) {
+        // binary messages are opt-in and only read on their own channel
+        if (!channel.equals(RedisDatabase.binaryChannel(RedisDatabase.BAN_INVALIDATION_CHANNEL))) {
+            plugin.getLogger().warn("Rejected a binary message on {}, which only carries text", channel);
+            return;
+        }
+        try {
+            invalidate(BinaryCodec.read(message, BinaryCodec.BAN_INVALIDATION).uuid());
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warn("Received an invalid binary ban invalidation: {}", e.getMessage());
+        }
+    }
+
+    private void invalidate(UUID uuid) {
+        if (plugin.getDatabase() == null) return;
+        plugin.getDatabase().getBanCache().invalidate(uuid);
+    }
+}
@@ -0,0 +1,63 @@
+package net.cytonic.cynturion.messaging.pubsub;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import net.cytonic.cynturion.messaging.BinaryCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A cheap check run on broadcast player commands before they are deserialized. Most players in a broadcast are
+ * connected to some other proxy, so a message that doesn't mention any player connected here is skipped without
+ * parsing its container or kick component.
+ */
+public final class LocalPlayerFilter {
+
+    private static final Pattern UUID_PATTERN = Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
+    private LocalPlayerFilter() {
+    }
+
+    /**
+     * @param proxy   the proxy
+     * @param message a text message
+     * @return whether any uuid in the message belongs to a player connected to this proxy
+     */
+    static boolean mentionsLocalPlayer(ProxyServer proxy, String message) {
+        Matcher matcher = UUID_PATTERN.matcher(message);
+        while (matcher.find()) {
+            if (proxy.getPlayer(UUID.fromString(matcher.group())).isPresent()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the player a text command is about without deserializing it: the first uuid in it
+     *
+     * @param message the command
+     * @return the player, or empty if the message holds no uuid
+     */
+    public static Optional<UUID> playerOf(String message) {
+        Matcher matcher = UUID_PATTERN.matcher(message);
+        return matcher.find() ? Optional.of(UUID.fromString(matcher.group())) : Optional.empty();
+    }
+
+    /**
+     * Finds the player a command is about without deserializing it: the leading uuid of a binary message, or the first
+     * uuid in a text one
+     *
+     * @param message the command as received
+     * @return the player, or empty if the message holds no uuid
+     */
+    public static Optional<UUID> playerOf(byte[] message) {
+        if (!BinaryCodec.isBinary(message)) return playerOf(new String(message, StandardCharsets.UTF_8));
+        try {
+            return Optional.of(BinaryCodec.leadingUuid(message));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package net.cytonic.cynturion.messaging.pubsub;
+
+import net.cytonic.cynturion.messaging.BinaryCodec;
+
+/**
+ * Handles the messages of one or more Redis channels, as routed by the {@link PubSubRouter}
+ */
+@FunctionalInterface
+public interface MessageHandler {
+
+    /**
+     * Called on the subscriber thread for every message published on a channel this handler is registered for. A
+     * handler that can't handle a message throws, so transports that keep messages can retry or dead-letter it.
+     *
+     * @param channel the channel the message was published on
+     * @param message the message
+     */
+    void onMessage(String channel, String message);
+
+    /**
+     * Called instead of {@link #onMessage(String, String)} for messages in the {@link BinaryCodec} format. Only handlers
+     * of channels that carry it need to override this.
+     *
+     * @param channel the channel the message was published on
+     * @param message the message
+     */
+    default void onMessage(String channel, byte[] message) {
+        throw new IllegalArgumentException(STR."Binary messages aren't expected on \{channel}");
+    }
+}
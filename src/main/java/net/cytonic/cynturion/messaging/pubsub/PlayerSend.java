@@ -6,11 +6,11 @@ import net.cytonic.containers.Container;
 import net.cytonic.containers.SendPlayerToServerContainer;
 import net.cytonic.cynturion.Cynturion;
 import net.cytonic.cynturion.RedisDatabase;
-import redis.clients.jedis.JedisPubSub;
+import net.cytonic.cynturion.messaging.BinaryCodec;
 
 import java.util.UUID;
 
-public class PlayerSend extends JedisPubSub {
+public class PlayerSend implements MessageHandler {
 
     private final Cynturion plugin;
 
@@ -20,48 +20,57 @@ public class PlayerSend extends JedisPubSub {
 
     @Override
     public void onMessage(String channel, String message) {
-        plugin.getLogger().info("{} : {}", channel, message);
-        try {
-            if (channel.equals(RedisDatabase.PLAYER_SEND_CHANNEL)) {
-                Container container = Container.deserialize(message);
-                if (container instanceof SendPlayerToServerContainer c) {
-                    UUID uuid = c.getPlayer();
-                    String serverId = c.getServer().id();
-                    if (plugin.getProxy().getPlayer(uuid).isPresent()) {
-                        Player player = plugin.getProxy().getPlayer(uuid).get();
-                        if (plugin.getProxy().getServer(serverId).isPresent()) {
-                            ConnectionRequestBuilder builder = player.createConnectionRequest(plugin.getProxy().getServer(serverId).get());
-                            builder.connect().whenComplete((result, throwable) -> {
-                                if (throwable != null) {
-                                    plugin.getLogger().error(throwable.getMessage(), throwable);
-                                    return;
-                                }
-                                plugin.getLogger().error(result.getStatus().name());
+        if (channel.startsWith(RedisDatabase.PLAYER_SEND_CHANNEL)) {
+            // broadcasts reach every proxy, only the one the player is connected to handles them
+            if (channel.equals(RedisDatabase.PLAYER_SEND_CHANNEL) && !LocalPlayerFilter.mentionsLocalPlayer(plugin.getProxy(), message)) return;
+            plugin.getLogger().info("{} : {}", channel, message);
+            if (Container.deserialize(message) instanceof SendPlayerToServerContainer c) {
+                send(c.getPlayer(), c.getServer().id());
+            } else {
+                throw new IllegalArgumentException("Attempting to send to a server without a SendPlayerToServerContainer");
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(String channel, byte[] message) {
+        if (channel.startsWith(RedisDatabase.PLAYER_SEND_CHANNEL)) {
+            BinaryCodec.Reader reader = BinaryCodec.read(message, BinaryCodec.PLAYER_SEND);
+            UUID uuid = reader.uuid();
+            String serverId = reader.string();
+            plugin.getLogger().info("{} : {} -> {}", channel, uuid, serverId);
+            send(uuid, serverId);
+        }
+    }
+
+    private void send(UUID uuid, String serverId) {
+        if (plugin.getProxy().getPlayer(uuid).isPresent()) {
+            Player player = plugin.getProxy().getPlayer(uuid).get();
+            if (plugin.getProxy().getServer(serverId).isPresent()) {
+                ConnectionRequestBuilder builder = player.createConnectionRequest(plugin.getProxy().getServer(serverId).get());
+                builder.connect().whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        plugin.getLogger().error(throwable.getMessage(), throwable);
+                        return;
+                    }
+                    plugin.getLogger().error(result.getStatus().name());
 
-                                if (!result.isSuccessful()) {
-                                    builder.connect().whenComplete((result1, throwable1) -> {
-                                        if (throwable1 != null) {
-                                            plugin.getLogger().error(throwable1.getMessage(), throwable1);
-                                        }
-                                        if (!result1.isSuccessful()) {
-                                            builder.connect();
-                                        }
-                                    });
-                                }
-                            });
-                        } else {
-                            plugin.getLogger().warn("Supposed to send player, but the server doesn't exist!");
-                        }
-                    } else {
-                        plugin.getLogger().warn("Supposed to send player, but player isn't online!");
+                    if (!result.isSuccessful()) {
+                        builder.connect().whenComplete((result1, throwable1) -> {
+                            if (throwable1 != null) {
+                                plugin.getLogger().error(throwable1.getMessage(), throwable1);
+                            }
+                            if (!result1.isSuccessful()) {
+                                builder.connect();
+                            }
+                        });
                     }
-                } else {
-                    plugin.getLogger().warn("Attempting to send to a server without a SendPlayerToServerContainer");
-                }
+                });
+            } else {
+                plugin.getLogger().warn("Supposed to send player, but the server doesn't exist!");
             }
-        } catch (Exception e) {
-            System.out.println(STR."Error \{e}");
-            e.printStackTrace(System.err);
+        } else {
+            plugin.getLogger().warn("Supposed to send player, but player isn't online!");
         }
     }
 }
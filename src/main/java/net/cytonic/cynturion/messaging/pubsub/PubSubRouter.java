@@ -0,0 +1,84 @@
+package net.cytonic.cynturion.messaging.pubsub;
+
+import net.cytonic.cynturion.messaging.BinaryCodec;
+import org.slf4j.Logger;
+import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A single subscription that carries every channel the proxy listens on, dispatching each message to the handler
+ * registered for its channel. Registering a channel after the subscription is live adds it to the same connection.
+ * <p>
+ * Messages are received as raw bytes, so {@link BinaryCodec} messages reach their handler as they were published, and
+ * only text messages are decoded to strings.
+ */
+public class PubSubRouter extends BinaryJedisPubSub {
+
+    private final Map<String, MessageHandler> handlers = new ConcurrentHashMap<>();
+    private final Logger logger;
+    private volatile Runnable subscribeListener = () -> {
+    };
+
+    public PubSubRouter(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Routes a channel to a handler, subscribing to it right away if the subscription is already live
+     *
+     * @param channel the channel
+     * @param handler the handler of the channel's messages
+     */
+    public void register(String channel, MessageHandler handler) {
+        handlers.put(channel, handler);
+        if (isSubscribed()) {
+            try {
+                subscribe(channel.getBytes(StandardCharsets.UTF_8));
+            } catch (JedisException e) {
+                // the connection is down, the channel is picked up when the subscription is re-established
+                logger.debug("Deferred subscribing to {}", channel, e);
+            }
+        }
+    }
+
+    /**
+     * Sets a callback to run on the subscriber thread whenever a channel subscription is confirmed
+     *
+     * @param listener the callback
+     */
+    public void setSubscribeListener(Runnable listener) {
+        this.subscribeListener = listener;
+    }
+
+    /**
+     * @return every channel that has a handler
+     */
+    public byte[][] getChannels() {
+        return handlers.keySet().stream().map(channel -> channel.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+    }
+
+    @Override
+    public void onSubscribe(byte[] channel, int subscribedChannels) {
+        subscribeListener.run();
+    }
+
+    @Override
+    public void onMessage(byte[] rawChannel, byte[] message) {
+        String channel = new String(rawChannel, StandardCharsets.UTF_8);
+        MessageHandler handler = handlers.get(channel);
+        if (handler == null) return;
+        try {
+            if (BinaryCodec.isBinary(message)) {
+                handler.onMessage(channel, message);
+            } else {
+                handler.onMessage(channel, new String(message, StandardCharsets.UTF_8));
+            }
+        } catch (Exception e) {
+            logger.error("An error occurred whilst handling a message on {}", channel, e);
+        }
+    }
+}
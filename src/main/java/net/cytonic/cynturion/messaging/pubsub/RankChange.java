@@ -0,0 +1,49 @@
+package net.cytonic.cynturion.messaging.pubsub;
+
+import net.cytonic.cynturion.Cynturion;
+import net.cytonic.cynturion.RedisDatabase;
+import net.cytonic.cynturion.messaging.BinaryCodec;
+import net.cytonic.enums.PlayerRank;
+
+import java.util.UUID;
+
+public class RankChange implements MessageHandler {
+
+    private final Cynturion plugin;
+
+    public RankChange(Cynturion plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void onMessage(String channel, String message) {
+        if (!channel.equals(RedisDatabase.PLAYER_RANK_CHANGE_CHANNEL)) return;
+        try {
+            // formatting: <UUID>|:|<RANK>, the rank is optional
+            String[] parts = message.split("\\|:\\|");
+            changed(UUID.fromString(parts[0]), parts.length > 1 ? PlayerRank.valueOf(parts[1]) : null);
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warn("Received an invalid rank change message: {}", message);
+        }
+    }
+
+    @Override
+    public void onMessage(String channel, byte[] message) {
+        // binary messages are opt-in and only read on their own channel
+        if (!channel.equals(RedisDatabase.binaryChannel(RedisDatabase.PLAYER_RANK_CHANGE_CHANNEL))) {
+            plugin.getLogger().warn("Rejected a binary message on {}, which only carries text", channel);
+            return;
+        }
+        try {
+            BinaryCodec.Reader reader = BinaryCodec.read(message, BinaryCodec.RANK_CHANGE);
+            changed(reader.uuid(), PlayerRank.valueOf(reader.string()));
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warn("Received an invalid binary rank change message: {}", e.getMessage());
+        }
+    }
+
+    private void changed(UUID uuid, PlayerRank rank) {
+        if (plugin.getRankManager() == null) return;
+        plugin.getRankManager().onRankChanged(uuid, rank);
+    }
+}
@@ -0,0 +1,37 @@
+package net.cytonic.cynturion.messaging.pubsub;
+
+import net.cytonic.cynturion.messaging.StripedExecutor;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Moves a player command handler off the subscriber thread. Messages are keyed by the player they are about, so
+ * commands for one player run in order while commands for different players run in parallel, and a slow handler
+ * only holds up its own stripe instead of every channel.
+ */
+public class StripedHandler implements MessageHandler {
+
+    private final StripedExecutor executor;
+    private final MessageHandler delegate;
+
+    public StripedHandler(StripedExecutor executor, MessageHandler delegate) {
+        this.executor = executor;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onMessage(String channel, String message) {
+        executor.execute(playerKey(channel, LocalPlayerFilter.playerOf(message)), () -> delegate.onMessage(channel, message));
+    }
+
+    @Override
+    public void onMessage(String channel, byte[] message) {
+        executor.execute(playerKey(channel, LocalPlayerFilter.playerOf(message)), () -> delegate.onMessage(channel, message));
+    }
+
+    // messages without a player are kept in order per channel
+    private static Object playerKey(String channel, Optional<UUID> player) {
+        return player.<Object>map(uuid -> uuid).orElse(channel);
+    }
+}
@@ -0,0 +1,67 @@
+package net.cytonic.cynturion.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long each event handler takes, from the moment Velocity calls it until its work is done
+ */
+public class HandlerMetrics {
+
+    private final Map<String, Timing> timings = new ConcurrentHashMap<>();
+
+    /**
+     * Records one invocation of a handler
+     *
+     * @param handler    the handler name
+     * @param startNanos the {@link System#nanoTime()} at which the handler was called
+     */
+    public void record(String handler, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        Timing timing = timings.computeIfAbsent(handler, k -> new Timing());
+        timing.count.increment();
+        timing.totalNanos.add(elapsed);
+        timing.maxNanos.accumulate(elapsed);
+    }
+
+    /**
+     * Gets the recorded timings, sorted by handler name
+     *
+     * @return the timings of every handler that ran at least once
+     */
+    public Map<String, Timing> getTimings() {
+        return new TreeMap<>(timings);
+    }
+
+    public static final class Timing {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        /**
+         * @return how many times the handler ran
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return the mean handler latency, in milliseconds
+         */
+        public double getMeanMillis() {
+            long count = this.count.sum();
+            return count == 0 ? 0 : (double) totalNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        /**
+         * @return the slowest handler latency, in milliseconds
+         */
+        public double getMaxMillis() {
+            return (double) maxNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package net.cytonic.cynturion;
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import net.cytonic.cynturion.balancing.BalancingStrategy;
+import net.cytonic.cynturion.balancing.ServerLoads;
+import net.cytonic.objects.ServerGroup;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Joins a lobby after a restart and compares how evenly each {@link BalancingStrategy} spreads the players. Loads are
+ * only refreshed every {@link #REFRESH_EVERY} joins, like the cached counts between two refreshes, so a strategy has
+ * to cope with stale counts, and no caps even things out for it. The spread is the gap between the fullest and the
+ * emptiest server, in utilization.
+ */
+class BalancingSimulationTest {
+
+    private static final int SERVERS = 20;
+    private static final int JOINS = 1_500;
+    private static final int REFRESH_EVERY = 25;
+    private static final int TRIALS = 20;
+
+    @Test
+    void loadAwareStrategiesSpreadEvenServersEvenly() {
+        Map<BalancingStrategy, Double> spread = simulate(i -> 100);
+        assertTrue(spread.get(BalancingStrategy.POWER_OF_TWO) < spread.get(BalancingStrategy.RANDOM) / 2, spread.toString());
+        assertTrue(spread.get(BalancingStrategy.LEAST_CONNECTIONS) < spread.get(BalancingStrategy.RANDOM) / 2, spread.toString());
+    }
+
+    @Test
+    void weightedFillsMixedCapacitiesEvenly() {
+        // half the servers take twice as many players
+        Map<BalancingStrategy, Double> spread = simulate(i -> i % 2 == 0 ? 100 : 200);
+        assertTrue(spread.get(BalancingStrategy.WEIGHTED) < spread.get(BalancingStrategy.RANDOM) / 2, spread.toString());
+        assertTrue(spread.get(BalancingStrategy.POWER_OF_TWO) < spread.get(BalancingStrategy.RANDOM) / 2, spread.toString());
+    }
+
+    /**
+     * @return strategy -> the mean spread over {@link #TRIALS} runs
+     */
+    private static Map<BalancingStrategy, Double> simulate(IntUnaryOperator capacity) {
+        Map<BalancingStrategy, Double> spread = new EnumMap<>(BalancingStrategy.class);
+        for (BalancingStrategy strategy : BalancingStrategy.values()) {
+            double total = 0;
+            for (int trial = 0; trial < TRIALS; trial++) {
+                total += run(strategy, capacity);
+            }
+            spread.put(strategy, total / TRIALS);
+        }
+        return spread;
+    }
+
+    private static double run(BalancingStrategy strategy, IntUnaryOperator capacity) {
+        ServerLoads loads = new ServerLoads();
+        ServerGroupingManager manager = TestServers.uncapped(loads, strategy);
+        ServerGroup lobby = TestServers.group("lobby", true);
+        manager.addServerGroup(lobby);
+        int[] players = new int[SERVERS];
+        int[] capacities = new int[SERVERS];
+        RegisteredServer[] servers = new RegisteredServer[SERVERS];
+        for (int i = 0; i < SERVERS; i++) {
+            int index = i;
+            servers[i] = TestServers.server(STR."lobby-\{i}", () -> players[index]);
+            capacities[i] = capacity.applyAsInt(i);
+            loads.setCapacity(servers[i].getServerInfo().getName(), capacities[i]);
+            manager.addGroupedServer(lobby, servers[i]);
+        }
+        Map<RegisteredServer, Integer> index = new IdentityHashMap<>();
+        for (int i = 0; i < SERVERS; i++) {
+            index.put(servers[i], i);
+        }
+        for (int join = 0; join < JOINS; join++) {
+            if (join % REFRESH_EVERY == 0) loads.refresh(List.of(servers));
+            RegisteredServer picked = manager.chooseFallback().orElseThrow();
+            players[index.get(picked)]++;
+        }
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        for (int i = 0; i < SERVERS; i++) {
+            double utilization = (double) players[i] / capacities[i];
+            min = Math.min(min, utilization);
+            max = Math.max(max, utilization);
+        }
+        return max - min;
+    }
+
+    @Test
+    void rejectedPicksAreNotCounted() {
+        ServerLoads loads = new ServerLoads();
+        ServerGroupingManager manager = TestServers.uncapped(loads, BalancingStrategy.RANDOM);
+        ServerGroup lobby = TestServers.group("lobby", true);
+        manager.addServerGroup(lobby);
+        RegisteredServer healthy = TestServers.server("lobby-healthy");
+        RegisteredServer down = TestServers.server("lobby-down");
+        manager.addGroupedServer(lobby, healthy);
+        manager.addGroupedServer(lobby, down);
+
+        for (int i = 0; i < 100; i++) {
+            assertSame(healthy, manager.chooseFallback(server -> server != down).orElseThrow());
+        }
+        assertEquals(0, loads.get(down).players());
+        assertEquals(100, loads.get(healthy).players());
+    }
+
+    @Test
+    void removingAServerFromItsGroupDropsItsLoad() {
+        ServerLoads loads = new ServerLoads();
+        ServerGroupingManager manager = TestServers.uncapped(loads, BalancingStrategy.RANDOM);
+        ServerGroup lobby = TestServers.group("lobby", true);
+        manager.addServerGroup(lobby);
+        RegisteredServer server = TestServers.server("lobby-0");
+        manager.addGroupedServer(lobby, server);
+        manager.chooseFallback().orElseThrow();
+        assertEquals(1, loads.get(server).players());
+
+        manager.removeServer("lobby-0", lobby);
+
+        assertFalse(manager.contains("lobby-0"));
+        assertEquals(0, loads.get(server).players());
+    }
+}
@@ -0,0 +1,166 @@
+package net.cytonic.cynturion;
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import net.cytonic.cynturion.balancing.BalancingStrategy;
+import net.cytonic.cynturion.balancing.ServerLoads;
+import net.cytonic.objects.ServerGroup;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerGroupingManagerTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int ROUNDS = 5_000;
+
+    @Test
+    void readersOnlySeeWholeSnapshotsWhileWritersSwapThem() throws Exception {
+        // readers record an assignment on every pick, caps this high keep the stable lobby eligible throughout
+        ServerGroupingManager manager = TestServers.uncapped(new ServerLoads(), BalancingStrategy.POWER_OF_TWO);
+        ServerGroup lobby = TestServers.group("lobby", true);
+        ServerGroup game = TestServers.group("game", false);
+        manager.addServerGroup(lobby);
+        manager.addServerGroup(game);
+        RegisteredServer stable = TestServers.server("lobby-stable");
+        manager.addGroupedServer(lobby, stable);
+
+        Set<String> lobbies = ConcurrentHashMap.newKeySet();
+        lobbies.add("lobby-stable");
+        for (int w = 0; w < WRITERS; w++) {
+            lobbies.add(STR."lobby-\{w}");
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        CyclicBarrier start = new CyclicBarrier(WRITERS + READERS);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> violation = new AtomicReference<>();
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            RegisteredServer churned = TestServers.server(STR."lobby-\{w}");
+            RegisteredServer match = TestServers.server(STR."game-\{w}");
+            writers.add(pool.submit(() -> {
+                start.await();
+                for (int round = 0; round < ROUNDS; round++) {
+                    manager.addGroupedServer(lobby, churned);
+                    manager.addGroupedServer(game, match);
+                    manager.removeServer(churned.getServerInfo().getName(), lobby);
+                    manager.removeServer(match.getServerInfo().getName(), null);
+                }
+                // every writer leaves its lobby registered
+                manager.addGroupedServer(lobby, churned);
+                return null;
+            }));
+        }
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(pool.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    Optional<RegisteredServer> picked = manager.chooseFallback();
+                    if (picked.isEmpty()) {
+                        violation.compareAndSet(null, "no fallback while the stable lobby was registered");
+                    } else if (!lobbies.contains(picked.get().getServerInfo().getName())) {
+                        violation.compareAndSet(null, STR."picked \{picked.get()}, which isn't in a fallback group");
+                    }
+                    if (!manager.contains("lobby-stable")) {
+                        violation.compareAndSet(null, "lost the stable lobby");
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get(1, TimeUnit.MINUTES);
+        }
+        writing.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(1, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        assertNull(violation.get());
+        // concurrent updates to the snapshot must not lose one another
+        for (String name : lobbies) {
+            assertTrue(manager.contains(name), name);
+        }
+        for (int w = 0; w < WRITERS; w++) {
+            assertFalse(manager.contains(STR."game-\{w}"));
+        }
+    }
+
+    @Test
+    void fallsBackToNothingWithoutFallbackServers() {
+        ServerGroupingManager manager = TestServers.uncapped(new ServerLoads(), BalancingStrategy.RANDOM);
+        ServerGroup game = TestServers.group("game", false);
+        manager.addServerGroup(game);
+        manager.addGroupedServer(game, TestServers.server("game-0"));
+
+        assertEquals(Optional.empty(), manager.chooseFallback());
+    }
+
+    @Test
+    void aServersOwnCapWinsOverItsGroups() {
+        ServerGroupingManager manager = new ServerGroupingManager(new ServerLoads(), BalancingStrategy.RANDOM, "", 0.8, 1.0, "lobby=0.9:1.0, lobby-closed=0:0");
+        ServerGroup lobby = TestServers.group("lobby", true);
+        manager.addServerGroup(lobby);
+        RegisteredServer open = TestServers.server("lobby-open");
+        manager.addGroupedServer(lobby, open);
+        manager.addGroupedServer(lobby, TestServers.server("lobby-closed"));
+
+        for (int i = 0; i < 50; i++) {
+            assertSame(open, manager.chooseFallback().orElseThrow());
+        }
+    }
+
+    @Test
+    void aFullTierSpillsOverAtItsOwnCap() {
+        ServerLoads loads = new ServerLoads();
+        ServerGroupingManager manager = new ServerGroupingManager(loads, BalancingStrategy.RANDOM, "lobby, overflow", 0.8, 1.0, "lobby=0.1:0.2");
+        ServerGroup lobby = TestServers.group("lobby", true);
+        ServerGroup overflow = TestServers.group("overflow", true);
+        manager.addServerGroup(lobby);
+        manager.addServerGroup(overflow);
+        RegisteredServer small = TestServers.server("lobby-0");
+        RegisteredServer spill = TestServers.server("overflow-0");
+        manager.addGroupedServer(lobby, small);
+        manager.addGroupedServer(overflow, spill);
+        loads.setCapacity("lobby-0", 10);
+
+        // two players fill the lobby to its hard cap of 0.2
+        assertSame(small, manager.chooseFallback().orElseThrow());
+        assertSame(small, manager.chooseFallback().orElseThrow());
+        assertSame(spill, manager.chooseFallback().orElseThrow());
+    }
+
+    @Test
+    void unavailableServersAreLeftOutUntilTheyRecover() {
+        ServerGroupingManager manager = TestServers.uncapped(new ServerLoads(), BalancingStrategy.RANDOM);
+        ServerGroup lobby = TestServers.group("lobby", true);
+        manager.addServerGroup(lobby);
+        RegisteredServer up = TestServers.server("lobby-up");
+        RegisteredServer down = TestServers.server("lobby-down");
+        manager.addGroupedServer(lobby, up);
+        manager.addGroupedServer(lobby, down);
+
+        manager.setAvailable("lobby-down", false);
+        for (int i = 0; i < 50; i++) {
+            assertSame(up, manager.chooseFallback().orElseThrow());
+        }
+        assertTrue(manager.contains("lobby-down"));
+
+        manager.setAvailable("lobby-up", false);
+        assertEquals(Optional.empty(), manager.chooseFallback());
+
+        manager.setAvailable("lobby-down", true);
+        assertSame(down, manager.chooseFallback().orElseThrow());
+    }
+}
@@ -0,0 +1,93 @@
+package net.cytonic.cynturion;
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import net.cytonic.cynturion.balancing.BalancingStrategy;
+import net.cytonic.cynturion.balancing.ServerLoads;
+import net.cytonic.objects.ServerGroup;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.RecordComponent;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.IntSupplier;
+
+/**
+ * Stand-ins for the Velocity and Commons types the balancing code reads, and a manager that leaves them to its strategy
+ */
+final class TestServers {
+
+    private TestServers() {
+    }
+
+    /**
+     * @param name the server name
+     * @return a server that only answers its name, address and an empty player list
+     */
+    static RegisteredServer server(String name) {
+        return server(name, () -> 0);
+    }
+
+    /**
+     * @param name    the server name
+     * @param players how many players the server reports, read on every call
+     * @return a server that only answers its name, address and a player list of that size
+     */
+    static RegisteredServer server(String name, IntSupplier players) {
+        ServerInfo info = new ServerInfo(name, InetSocketAddress.createUnresolved(name, 25565));
+        return (RegisteredServer) Proxy.newProxyInstance(TestServers.class.getClassLoader(), new Class<?>[]{RegisteredServer.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getServerInfo" -> info;
+                    case "getPlayersConnected" -> Collections.nCopies(players.getAsInt(), null);
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> name;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Builds a group through its canonical constructor, filling the id and fallback flag and leaving everything else at
+     * its default
+     *
+     * @param id          the group id
+     * @param canFallback whether players fall back to the group
+     * @return the group
+     */
+    static ServerGroup group(String id, boolean canFallback) {
+        try {
+            RecordComponent[] components = ServerGroup.class.getRecordComponents();
+            Class<?>[] types = Arrays.stream(components).map(RecordComponent::getType).toArray(Class<?>[]::new);
+            Object[] args = new Object[components.length];
+            for (int i = 0; i < components.length; i++) {
+                if (components[i].getName().equals("id")) {
+                    args[i] = id;
+                } else if (components[i].getName().equals("canFallback")) {
+                    args[i] = canFallback;
+                } else if (types[i] == boolean.class) {
+                    args[i] = false;
+                } else if (types[i].isPrimitive()) {
+                    args[i] = 0;
+                }
+            }
+            Constructor<ServerGroup> constructor = ServerGroup.class.getDeclaredConstructor(types);
+            return constructor.newInstance(args);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("ServerGroup can't be built reflectively", e);
+        }
+    }
+
+    /**
+     * Built without the settings, so a test never depends on or changes the configured tiers and caps
+     *
+     * @param loads    the loads the manager records its picks in
+     * @param strategy the strategy to pick with
+     * @return a manager that falls back to every group that allows it, in the order they were added, and never caps a
+     * server
+     */
+    static ServerGroupingManager uncapped(ServerLoads loads, BalancingStrategy strategy) {
+        return new ServerGroupingManager(loads, strategy, "", Double.MAX_VALUE, Double.MAX_VALUE, "");
+    }
+}